@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.benchmarks;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import name.alexkosarev.tutorials.helpdesk.HelpdeskStandaloneTutorialApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Запуск приложения для бенчмарков с собственной базой данных H2, заполненной заданным количеством заявок.
+ *
+ * Первый процент заявок получает по сто комментариев, общее количество комментариев равно количеству заявок.
+ *
+ * @author Alexander Kosarev
+ */
+final class BenchmarkApplication {
+
+    private static final int BATCH_SIZE = 10000;
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Запуск приложения.
+     *
+     * @param web запускать ли веб-контекст
+     * @param rows количество заявок
+     * @param properties дополнительные свойства приложения, переопределяющие application.yml
+     * @param profiles активные профили
+     * @return контекст приложения
+     */
+    static ConfigurableApplicationContext start(boolean web, int rows, Map<String, Object> properties,
+            String... profiles) {
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("spring.datasource.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_ON_EXIT=FALSE");
+        defaults.put("spring.datasource.initialize", false);
+        defaults.put("spring.jmx.enabled", false);
+        defaults.put("server.port", 0);
+        defaults.put("logging.level.root", "WARN");
+        defaults.put("helpdesk.jdbc.query-budget.enforce", false);
+        defaults.putAll(properties);
+
+        String[] args = defaults.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(HelpdeskStandaloneTutorialApplication.class)
+                .web(web)
+                .profiles(profiles)
+                .run(args);
+        populate(context.getBean(JdbcTemplate.class), rows);
+
+        return context;
+    }
+
+    private static void populate(JdbcTemplate jdbcTemplate, int rows) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int commentedTickets = Math.max(1, rows / 100);
+
+        List<Object[]> tickets = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> comments = new ArrayList<>(BATCH_SIZE);
+        for (int i = 1; i <= rows; i++) {
+            tickets.add(new Object[]{i, "Ticket #" + i + " issue", "Ticket #" + i + " issue description", now, now,
+                    i <= commentedTickets ? (rows - i) / commentedTickets + 1 : 0, now});
+            comments.add(new Object[]{i, "Comment #" + i, now, (i - 1) % commentedTickets + 1});
+
+            if (tickets.size() == BATCH_SIZE || i == rows) {
+                jdbcTemplate.batchUpdate("insert into ticket (id, issue, issue_details, date_created, date_modified, comment_count, last_activity) values (?, ?, ?, ?, ?, ?, ?)",
+                        tickets);
+                tickets.clear();
+            }
+        }
+
+        for (int i = 0; i < comments.size(); i += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate("insert into ticket_comment (id, comment, date_created, ticket_id) values (?, ?, ?, ?)",
+                    comments.subList(i, Math.min(i + BATCH_SIZE, comments.size())));
+        }
+
+        jdbcTemplate.execute("alter sequence ticket_seq restart with " + (rows + 1));
+        jdbcTemplate.execute("alter sequence ticket_comment_seq restart with " + (rows + 1));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import static name.alexkosarev.tutorials.helpdesk.AsyncRequests.performAndDispatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * Нагрузочный бенчмарк пропускной способности страницы списка заявок при разных размерах пула соединений.
+ *
+ * Запросы выполняются из 32 потоков к случайной из первых ста страниц списка. Кеш отрисованных страниц, кеш второго
+ * уровня и кеш запросов выключены, а пул потоков {@link name.alexkosarev.tutorials.helpdesk.async.JdbcExecutor}
+ * больше пула соединений, поэтому пропускная способность ограничена только количеством соединений.
+ *
+ * @author Alexander Kosarev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(32)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ConnectionPoolBenchmarks {
+
+    private static final int PAGES = 100;
+
+    @Param({"100000"})
+    private int rows;
+
+    @Param({"2", "5", "10", "20"})
+    private int poolSize;
+
+    private ConfigurableApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.hikari.maximum-pool-size", poolSize);
+        properties.put("spring.datasource.hikari.minimum-idle", poolSize);
+        properties.put("spring.jpa.properties.hibernate.cache.use_second_level_cache", false);
+        properties.put("spring.jpa.properties.hibernate.cache.use_query_cache", false);
+        properties.put("helpdesk.tickets.page-cache.enabled", false);
+        properties.put("helpdesk.async.jdbc-executor.pool-size", 64);
+        properties.put("helpdesk.async.jdbc-executor.queue-capacity", 1000);
+
+        context = BenchmarkApplication.start(true, rows, properties, "prod");
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String index() throws Exception {
+        return performAndDispatch(mockMvc, get("/tickets").param("page",
+                String.valueOf(ThreadLocalRandom.current().nextInt(PAGES))))
+                .andReturn().getResponse().getContentAsString();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.entities.TicketComment;
+import name.alexkosarev.tutorials.helpdesk.forms.TicketCommentForm;
+import name.alexkosarev.tutorials.helpdesk.forms.TicketForm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Бенчмарки преобразования форм в сущности.
+ *
+ * @author Alexander Kosarev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FormBenchmarks {
+
+    private final TicketForm ticketForm = new TicketForm("Benchmark issue", "Benchmark issue description", null);
+
+    private final TicketCommentForm ticketCommentForm = new TicketCommentForm("Benchmark comment");
+
+    private final Ticket ticket = ticketForm.toTicket();
+
+    @Benchmark
+    public Ticket toTicket() {
+        return ticketForm.toTicket();
+    }
+
+    @Benchmark
+    public Ticket toExistingTicket() {
+        return ticketForm.toTicket(ticket);
+    }
+
+    @Benchmark
+    public TicketComment toTicketComment() {
+        return ticketCommentForm.toTicketComment(ticket);
+    }
+}
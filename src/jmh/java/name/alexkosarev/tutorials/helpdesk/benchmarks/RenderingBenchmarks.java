@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import static name.alexkosarev.tutorials.helpdesk.AsyncRequests.performAndDispatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * Бенчмарки полной обработки запросов страниц списка заявок и заявки, включая отрисовку шаблонов.
+ *
+ * Приложение запускается в профиле dev, в котором шаблоны разбираются и сообщения разрешаются при каждом запросе, или
+ * в профиле prod с кешированием шаблонов и сообщений. Страница создания заявки не обращается к базе данных и
+ * показывает чистое время отрисовки. Асинхронные обработчики выполняются вместе с асинхронной диспетчеризацией, чтобы
+ * в измерение входили обращения к базе данных и отрисовка шаблона.
+ *
+ * @author Alexander Kosarev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RenderingBenchmarks {
+
+    @Param({"10000", "1000000"})
+    private int rows;
+
+    @Param({"dev", "prod"})
+    private String profile;
+
+    private ConfigurableApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkApplication.start(true, rows, Collections.<String, Object>emptyMap(), profile);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+
+        if (index().isEmpty() || viewOne().isEmpty() || createPage().isEmpty()) {
+            throw new IllegalStateException("Benchmarked pages must not be empty");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String index() throws Exception {
+        return performAndDispatch(mockMvc, get("/tickets")).andReturn().getResponse().getContentAsString();
+    }
+
+    @Benchmark
+    public String viewOne() throws Exception {
+        return performAndDispatch(mockMvc, get("/tickets/1")).andReturn().getResponse().getContentAsString();
+    }
+
+    @Benchmark
+    public String createPage() throws Exception {
+        return mockMvc.perform(get("/tickets/create")).andReturn().getResponse().getContentAsString();
+    }
+}
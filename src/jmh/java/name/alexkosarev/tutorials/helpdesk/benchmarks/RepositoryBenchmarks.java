@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.forms.TicketForm;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentView;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketCommentRepository;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Бенчмарки репозиториев заявок и комментариев на встроенной базе данных H2.
+ *
+ * Кеш второго уровня и кеш запросов выключены, чтобы каждый вызов доходил до базы данных. Каждый вызов
+ * {@link #save()} добавляет заявку, поэтому таблица заявок растёт в ходе измерений.
+ *
+ * @author Alexander Kosarev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RepositoryBenchmarks {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"10000", "1000000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+
+    private TicketRepository ticketRepository;
+
+    private TicketCommentRepository ticketCommentRepository;
+
+    private TicketForm ticketForm;
+
+    private Ticket commentedTicket;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.jpa.properties.hibernate.cache.use_second_level_cache", false);
+        properties.put("spring.jpa.properties.hibernate.cache.use_query_cache", false);
+
+        context = BenchmarkApplication.start(false, rows, properties);
+        ticketRepository = context.getBean(TicketRepository.class);
+        ticketCommentRepository = context.getBean(TicketCommentRepository.class);
+        ticketForm = new TicketForm("Benchmark issue", "Benchmark issue description", null);
+        commentedTicket = ticketRepository.findOne(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Ticket save() {
+        return ticketRepository.save(ticketForm.toTicket());
+    }
+
+    @Benchmark
+    public Page<Ticket> findAllFirstPage() {
+        return ticketRepository.findAll(new PageRequest(0, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public Page<Ticket> findAllLastPage() {
+        return ticketRepository.findAll(new PageRequest(rows / PAGE_SIZE - 1, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public Slice<Ticket> findAllByFirstPage() {
+        return ticketRepository.findAllBy(new PageRequest(0, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public Slice<TicketCommentView> findByTicket() {
+        return ticketCommentRepository.findByTicket(commentedTicket, new PageRequest(0, PAGE_SIZE));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.async;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import name.alexkosarev.tutorials.helpdesk.datasource.ReplicaRoutingDataSource;
+import name.alexkosarev.tutorials.helpdesk.exceptions.JdbcExecutorRejectedException;
+import name.alexkosarev.tutorials.helpdesk.metrics.JdbcStatistics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Исполнитель обращений к базе данных для асинхронной обработки запросов.
+ *
+ * Обработчик запроса передаёт работу с репозиториями исполнителю и возвращает {@link CompletableFuture}, освобождая
+ * поток контейнера сервлетов на время ожидания базы данных. Пул потоков и очередь ограничены: при переполнении очереди
+ * запрос завершается ответом 503 Service Unavailable вместо неограниченного накопления ожидающих запросов. Время
+ * ожидания в очереди записывается в гистограмму {@code histogram.jdbc-executor.wait.micros}.
+ *
+ * При выключенном асинхронном режиме работа выполняется в вызывающем потоке.
+ *
+ * @author Alexander Kosarev
+ */
+@Component
+public class JdbcExecutor implements DisposableBean {
+
+    private final GaugeService gaugeService;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public JdbcExecutor(GaugeService gaugeService,
+            @Value("${helpdesk.async.enabled:true}") boolean enabled,
+            @Value("${helpdesk.async.jdbc-executor.pool-size:10}") int poolSize,
+            @Value("${helpdesk.async.jdbc-executor.queue-capacity:100}") int queueCapacity) {
+        this.gaugeService = gaugeService;
+        if (enabled) {
+            executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("jdbc-"),
+                    new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Выполнение работы с базой данных.
+     *
+     * Статистика обращений к базе данных текущего запроса продолжает собираться в потоке исполнителя, разрешение
+     * читать с реплики переносится в поток исполнителя.
+     *
+     * @param <T> тип результата
+     * @param supplier работа с базой данных
+     * @return результат, завершённый исключением {@link JdbcExecutorRejectedException} при переполнении очереди
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (executor == null) {
+            complete(future, supplier);
+            return future;
+        }
+
+        JdbcStatistics statistics = JdbcStatistics.current();
+        boolean replicaAllowed = ReplicaRoutingDataSource.isReplicaAllowed();
+        long submitted = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                gaugeService.submit("histogram.jdbc-executor.wait.micros",
+                        TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - submitted));
+                JdbcStatistics.resume(statistics);
+                ReplicaRoutingDataSource.setReplicaAllowed(replicaAllowed);
+                try {
+                    complete(future, supplier);
+                } finally {
+                    ReplicaRoutingDataSource.setReplicaAllowed(false);
+                    JdbcStatistics.end();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            future.completeExceptionally(new JdbcExecutorRejectedException("JDBC executor queue is full", e));
+        }
+
+        return future;
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, Supplier<T> supplier) {
+        try {
+            future.complete(supplier.get());
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    public int getActiveCount() {
+        return executor == null ? 0 : executor.getActiveCount();
+    }
+
+    public int getPoolSize() {
+        return executor == null ? 0 : executor.getPoolSize();
+    }
+
+    public int getQueueSize() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    public long getCompletedTaskCount() {
+        return executor == null ? 0 : executor.getCompletedTaskCount();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
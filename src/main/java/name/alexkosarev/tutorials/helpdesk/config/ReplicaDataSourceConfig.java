@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.config;
+
+import com.codahale.metrics.MetricRegistry;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import name.alexkosarev.tutorials.helpdesk.datasource.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Источник данных с репликами для чтения.
+ *
+ * Основная база данных настраивается свойствами spring.datasource, реплики - списком адресов
+ * helpdesk.datasource.replicas.urls с теми же драйвером, пользователем и паролем. Все пулы получают настройки
+ * spring.datasource.hikari, имя пула дополняется суффиксом primary или replica-N, и метрики каждого пула публикуются
+ * отдельно. Пулы соединений основной базы данных и реплик не регистрируются как отдельные бины, поэтому {@link
+ * name.alexkosarev.tutorials.helpdesk.metrics.InstrumentedDataSourcePostProcessor} оборачивает только итоговый источник
+ * данных и каждый SQL-запрос учитывается один раз.
+ *
+ * @author Alexander Kosarev
+ */
+@Configuration
+@ConditionalOnProperty(name = "helpdesk.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig implements DisposableBean {
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    /**
+     * Общие настройки пулов соединений.
+     *
+     * @return настройки из свойств spring.datasource.hikari
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariConfig poolConfig() {
+        return new HikariConfig();
+    }
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, HikariConfig poolConfig,
+            MetricRegistry metricRegistry, @Value("${helpdesk.datasource.replicas.urls}") String[] urls) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            replicas.add(pool(poolConfig, properties, metricRegistry, "replica-" + replicas.size(), url));
+        }
+
+        routingDataSource = new ReplicaRoutingDataSource(
+                pool(poolConfig, properties, metricRegistry, "primary", properties.determineUrl()), replicas);
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private static HikariDataSource pool(HikariConfig poolConfig, DataSourceProperties properties,
+            MetricRegistry metricRegistry, String name, String url) {
+        HikariConfig config = new HikariConfig();
+        poolConfig.copyState(config);
+        config.setPoolName(poolConfig.getPoolName() == null ? name : poolConfig.getPoolName() + "-" + name);
+        config.setDriverClassName(properties.determineDriverClassName());
+        config.setJdbcUrl(url);
+        config.setUsername(properties.determineUsername());
+        config.setPassword(properties.determinePassword());
+        config.setMetricRegistry(metricRegistry);
+
+        return new HikariDataSource(config);
+    }
+
+    @Override
+    public void destroy() {
+        if (routingDataSource != null) {
+            routingDataSource.close();
+        }
+    }
+}
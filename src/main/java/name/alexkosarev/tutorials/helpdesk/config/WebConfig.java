@@ -16,18 +16,49 @@
 package name.alexkosarev.tutorials.helpdesk.config;
 
 import lombok.extern.slf4j.Slf4j;
+import name.alexkosarev.tutorials.helpdesk.controllers.EntityTagInterceptor;
+import name.alexkosarev.tutorials.helpdesk.controllers.TicketCommentsController;
+import name.alexkosarev.tutorials.helpdesk.controllers.TicketsController;
+import name.alexkosarev.tutorials.helpdesk.datasource.ReplicaRoutingInterceptor;
+import name.alexkosarev.tutorials.helpdesk.metrics.HandlerLatencyHistograms;
+import name.alexkosarev.tutorials.helpdesk.metrics.HandlerLatencyInterceptor;
+import name.alexkosarev.tutorials.helpdesk.metrics.JdbcStatisticsInterceptor;
+import name.alexkosarev.tutorials.helpdesk.ratelimit.RateLimitInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 import org.springframework.web.servlet.i18n.CookieLocaleResolver;
 import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
+import org.springframework.web.servlet.mvc.WebContentInterceptor;
 
 @Slf4j
 @Configuration
 public class WebConfig extends WebMvcConfigurerAdapter {
 
+    @Value("${helpdesk.datasource.replicas.enabled:false}")
+    private boolean replicasEnabled;
+
+    @Value("${helpdesk.datasource.replicas.stickiness:5}")
+    private int replicaStickiness;
+
+    @Value("${helpdesk.rate-limit.enabled:true}")
+    private boolean rateLimitEnabled;
+
+    private final RateLimitInterceptor rateLimitInterceptor;
+
+    private final HandlerLatencyHistograms handlerLatencyHistograms;
+
+    public WebConfig(RateLimitInterceptor rateLimitInterceptor, HandlerLatencyHistograms handlerLatencyHistograms) {
+        this.rateLimitInterceptor = rateLimitInterceptor;
+        this.handlerLatencyHistograms = handlerLatencyHistograms;
+    }
+
     @Override
     public void addViewControllers(ViewControllerRegistry registry) {
         registry.addRedirectViewController("/", "/tickets");
@@ -36,6 +67,17 @@ public class WebConfig extends WebMvcConfigurerAdapter {
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(localeChangeInterceptor());
+        if (rateLimitEnabled) {
+            registry.addInterceptor(rateLimitInterceptor);
+        }
+        registry.addInterceptor(new HandlerLatencyInterceptor(handlerLatencyHistograms, TicketsController.class,
+                TicketCommentsController.class));
+        registry.addInterceptor(new JdbcStatisticsInterceptor());
+        if (replicasEnabled) {
+            registry.addInterceptor(new ReplicaRoutingInterceptor(replicaStickiness));
+        }
+        registry.addInterceptor(ticketPagesCacheInterceptor()).addPathPatterns("/tickets/**");
+        registry.addInterceptor(new EntityTagInterceptor()).addPathPatterns("/tickets", "/tickets/**");
     }
 
     @Bean
@@ -47,4 +89,29 @@ public class WebConfig extends WebMvcConfigurerAdapter {
     public LocaleChangeInterceptor localeChangeInterceptor() {
         return new LocaleChangeInterceptor();
     }
+
+    /**
+     * Обязательная проверка актуальности страниц заявок: браузер может хранить страницу, но перед показом должен
+     * отправить условный запрос, иначе после изменения заявки может быть показана устаревшая копия.
+     *
+     * @return перехватчик, добавляющий заголовок Cache-Control: no-cache
+     */
+    @Bean
+    public WebContentInterceptor ticketPagesCacheInterceptor() {
+        WebContentInterceptor interceptor = new WebContentInterceptor();
+        interceptor.setCacheControl(CacheControl.noCache());
+        return interceptor;
+    }
+
+    /**
+     * Вычисление ETag по телу ответов REST API и ответ 304 Not Modified на условные запросы.
+     *
+     * @return регистрация фильтра для адресов API
+     */
+    @Bean
+    public FilterRegistrationBean apiEtagFilter() {
+        FilterRegistrationBean registration = new FilterRegistrationBean(new ShallowEtagHeaderFilter());
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
 }
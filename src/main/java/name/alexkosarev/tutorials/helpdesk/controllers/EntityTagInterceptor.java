@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.controllers;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Проверка условного запроса по ETag, вычисленному обработчиком.
+ *
+ * Обработчик, выполняющий запросы к базе данных в потоках {@link name.alexkosarev.tutorials.helpdesk.async.JdbcExecutor},
+ * не должен изменять ответ из этих потоков, поэтому вместо проверки условного запроса он добавляет ETag в модель под
+ * именем {@link #ETAG_ATTRIBUTE}. Перехватчик удаляет его из модели и в потоке, отображающем результат, выставляет
+ * заголовок ETag, а если страница не изменилась — статус 304 Not Modified, и шаблон не отображается.
+ *
+ * @author Alexander Kosarev
+ */
+public class EntityTagInterceptor extends HandlerInterceptorAdapter {
+
+    /**
+     * Имя атрибута модели с ETag страницы
+     */
+    public static final String ETAG_ATTRIBUTE = EntityTagInterceptor.class.getName() + ".ETAG";
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+            ModelAndView modelAndView) {
+        if (modelAndView == null) {
+            return;
+        }
+
+        String etag = (String) modelAndView.getModel().remove(ETAG_ATTRIBUTE);
+        if (etag != null && new ServletWebRequest(request, response).checkNotModified(etag)) {
+            modelAndView.clear();
+        }
+    }
+}
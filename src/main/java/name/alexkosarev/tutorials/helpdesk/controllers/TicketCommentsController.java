@@ -21,11 +21,18 @@ import java.util.Map;
 import java.util.Objects;
 import javax.validation.Valid;
 import lombok.AllArgsConstructor;
+import name.alexkosarev.tutorials.helpdesk.datasource.ReadReplica;
 import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
 import name.alexkosarev.tutorials.helpdesk.entities.TicketComment;
+import name.alexkosarev.tutorials.helpdesk.events.TicketChangeEvent;
 import name.alexkosarev.tutorials.helpdesk.exceptions.EntityNotFoundException;
+import name.alexkosarev.tutorials.helpdesk.exceptions.TicketCommentQueueRejectedException;
 import name.alexkosarev.tutorials.helpdesk.forms.TicketCommentForm;
-import name.alexkosarev.tutorials.helpdesk.repositories.TicketCommentRepository;
+import name.alexkosarev.tutorials.helpdesk.metrics.QueryBudget;
+import name.alexkosarev.tutorials.helpdesk.services.TicketCommentService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketSearchService;
+import name.alexkosarev.tutorials.helpdesk.writebehind.TicketCommentWriteBehindQueue;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.BindingResult;
@@ -45,19 +52,32 @@ import org.springframework.web.servlet.ModelAndView;
 @AllArgsConstructor
 public class TicketCommentsController {
 
-    private final TicketCommentRepository repository;
+    private final TicketCommentService ticketCommentService;
+
+    private final TicketSearchService ticketSearchService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TicketCommentWriteBehindQueue writeBehindQueue;
 
     /**
      * Создание комментария.
      *
+     * В режиме отложенной записи комментарий ставится в очередь и сохраняется в фоне, поэтому после перенаправления
+     * он может появиться на странице заявки с небольшой задержкой. Если очередь не приняла комментарий, он не
+     * сохраняется синхронно, чтобы не опередить комментарии заявки, ещё не сохранённые из очереди.
+     *
      * @param form данные, отправленные пользователем
      * @param bindingResult результат валидации
      * @param ticket заявка, к которой создаётся комментарий
      * @return перенаправление на страницу заявки, в случае успеха, либо модель и шаблон заявки с ошибками валидации
      * @throws EntityNotFoundException если заявка не найдена
+     * @throws TicketCommentQueueRejectedException если очередь отложенной записи не приняла комментарий
      */
     @PostMapping
-    public ModelAndView create(@Valid TicketCommentForm form, BindingResult bindingResult, @PathVariable Ticket ticket) throws EntityNotFoundException {
+    @QueryBudget(5)
+    public ModelAndView create(@Valid TicketCommentForm form, BindingResult bindingResult, @PathVariable Ticket ticket)
+            throws EntityNotFoundException, TicketCommentQueueRejectedException {
         if (ticket == null) {
             throw new EntityNotFoundException("error.ticket.notFound");
         }
@@ -71,7 +91,16 @@ public class TicketCommentsController {
             return new ModelAndView("tickets/viewOne", model, HttpStatus.BAD_REQUEST);
         }
 
-        repository.save(form.toTicketComment(ticket));
+        TicketComment comment = form.toTicketComment(ticket);
+        if (writeBehindQueue.isEnabled()) {
+            if (!writeBehindQueue.offer(comment)) {
+                throw new TicketCommentQueueRejectedException("Ticket comment queue is full");
+            }
+        } else {
+            TicketComment savedComment = ticketCommentService.create(comment);
+            ticketSearchService.index(ticket);
+            eventPublisher.publishEvent(TicketChangeEvent.commentCreated(savedComment));
+        }
 
         return new ModelAndView("redirect:/tickets/" + ticket.getId());
     }
@@ -85,6 +114,8 @@ public class TicketCommentsController {
      * @throws EntityNotFoundException если комментарий или заявка не найдены
      */
     @GetMapping("{comment:\\d+}/delete")
+    @QueryBudget(2)
+    @ReadReplica
     public ModelAndView deletePage(@PathVariable Ticket ticket, @PathVariable TicketComment comment) throws EntityNotFoundException {
         if (comment == null) {
             throw new EntityNotFoundException("error.ticketComment.notFound");
@@ -105,6 +136,7 @@ public class TicketCommentsController {
      * @throws EntityNotFoundException если комментарий или заявка не найдены
      */
     @PostMapping("{comment:\\d+}/delete")
+    @QueryBudget(6)
     public ModelAndView delete(@PathVariable Ticket ticket, @PathVariable TicketComment comment) throws EntityNotFoundException {
         if (comment == null) {
             throw new EntityNotFoundException("error.ticketComment.notFound");
@@ -113,7 +145,9 @@ public class TicketCommentsController {
             throw new EntityNotFoundException("error.ticket.notFound");
         }
 
-        repository.delete(comment);
+        ticketCommentService.delete(comment);
+        ticketSearchService.index(ticket);
+        eventPublisher.publishEvent(TicketChangeEvent.commentDeleted(comment));
 
         return new ModelAndView("redirect:/tickets/" + comment.getTicket().getId());
     }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.controllers;
+
+import lombok.AllArgsConstructor;
+import name.alexkosarev.tutorials.helpdesk.events.TicketEventBus;
+import name.alexkosarev.tutorials.helpdesk.exceptions.TooManySubscribersException;
+import name.alexkosarev.tutorials.helpdesk.metrics.QueryBudget;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Потоки Server-Sent Events с изменениями заявок и комментариев.
+ *
+ * Страницы списка заявок и заявки подписываются на изменения и предлагают перечитать страницу только после
+ * изменения, вместо периодического обновления страниц пользователем.
+ *
+ * @author Alexander Kosarev
+ */
+@Controller
+@RequestMapping("tickets")
+@AllArgsConstructor
+public class TicketEventsController {
+
+    private final TicketEventBus eventBus;
+
+    /**
+     * Подписка на изменения всех заявок.
+     *
+     * @return поток событий
+     * @throws TooManySubscribersException если достигнуто максимальное количество подписчиков
+     */
+    @GetMapping(path = "events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @QueryBudget(0)
+    public SseEmitter events() throws TooManySubscribersException {
+        return eventBus.subscribe(null);
+    }
+
+    /**
+     * Подписка на изменения одной заявки и её комментариев.
+     *
+     * @param id идентификатор заявки
+     * @return поток событий
+     * @throws TooManySubscribersException если достигнуто максимальное количество подписчиков
+     */
+    @GetMapping(path = "{ticket:\\d+}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @QueryBudget(0)
+    public SseEmitter ticketEvents(@PathVariable("ticket") int id) throws TooManySubscribersException {
+        return eventBus.subscribe(id);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import name.alexkosarev.tutorials.helpdesk.exceptions.TicketExportRejectedException;
+import name.alexkosarev.tutorials.helpdesk.exceptions.UnsupportedExportFormatException;
+import name.alexkosarev.tutorials.helpdesk.exports.CsvTicketExportWriter;
+import name.alexkosarev.tutorials.helpdesk.exports.JsonLinesTicketExportWriter;
+import name.alexkosarev.tutorials.helpdesk.exports.TicketExportWriter;
+import name.alexkosarev.tutorials.helpdesk.metrics.QueryBudget;
+import name.alexkosarev.tutorials.helpdesk.services.TicketExportService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Контроллер для выгрузки всех заявок с комментариями.
+ *
+ * Выгрузка записывается непосредственно в ответ по мере чтения заявок из базы данных. Если клиент принимает gzip,
+ * ответ сжимается.
+ *
+ * Выгрузка держит соединение с базой данных всё время передачи ответа, поэтому количество одновременных выгрузок
+ * ограничено: выгрузка сверх ограничения получает ответ 503 Service Unavailable.
+ *
+ * @author Alexander Kosarev
+ */
+@Controller
+@RequestMapping("tickets/export")
+public class TicketExportController {
+
+    private final TicketExportService service;
+
+    private final ObjectMapper objectMapper;
+
+    private final Semaphore exports;
+
+    public TicketExportController(TicketExportService service, ObjectMapper objectMapper,
+            @Value("${helpdesk.tickets.export.max-concurrent:2}") int maxConcurrentExports) {
+        this.service = service;
+        this.objectMapper = objectMapper;
+        this.exports = new Semaphore(maxConcurrentExports);
+    }
+
+    /**
+     * Выгрузка заявок в CSV.
+     *
+     * @param acceptEncoding принимаемые клиентом кодировки содержимого
+     * @param response ответ
+     * @throws IOException в случае ошибки записи ответа
+     * @throws TicketExportRejectedException если достигнуто максимальное количество одновременных выгрузок
+     */
+    @GetMapping
+    @QueryBudget(2)
+    public void exportCsv(@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response) throws IOException, TicketExportRejectedException {
+        acquire();
+        try (TicketExportWriter writer = new CsvTicketExportWriter(
+                open(response, "text/csv", "tickets.csv", acceptEncoding))) {
+            service.export(writer);
+        } finally {
+            exports.release();
+        }
+    }
+
+    /**
+     * Выгрузка заявок в JSON Lines.
+     *
+     * @param acceptEncoding принимаемые клиентом кодировки содержимого
+     * @param response ответ
+     * @throws IOException в случае ошибки записи ответа
+     * @throws TicketExportRejectedException если достигнуто максимальное количество одновременных выгрузок
+     */
+    @GetMapping(params = "format=jsonl")
+    @QueryBudget(2)
+    public void exportJsonLines(@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response) throws IOException, TicketExportRejectedException {
+        acquire();
+        try (TicketExportWriter writer = new JsonLinesTicketExportWriter(objectMapper.getFactory(),
+                open(response, "application/x-ndjson", "tickets.jsonl", acceptEncoding))) {
+            service.export(writer);
+        } finally {
+            exports.release();
+        }
+    }
+
+    /**
+     * Выгрузка заявок в неизвестном формате.
+     *
+     * @param format запрошенный формат
+     * @throws UnsupportedExportFormatException всегда
+     */
+    @GetMapping(params = {"format", "format!=csv", "format!=jsonl"})
+    public void exportUnsupported(@RequestParam String format) throws UnsupportedExportFormatException {
+        throw new UnsupportedExportFormatException("Unsupported export format: " + format);
+    }
+
+    private void acquire() throws TicketExportRejectedException {
+        if (!exports.tryAcquire()) {
+            throw new TicketExportRejectedException("Ticket exports limit reached");
+        }
+    }
+
+    private static Writer open(HttpServletResponse response, String contentType, String fileName,
+            String acceptEncoding) throws IOException {
+        response.setContentType(contentType);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        OutputStream outputStream = response.getOutputStream();
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            outputStream = new GZIPOutputStream(outputStream);
+        }
+
+        return new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+}
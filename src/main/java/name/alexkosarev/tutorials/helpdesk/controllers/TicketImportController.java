@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.controllers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+import lombok.AllArgsConstructor;
+import name.alexkosarev.tutorials.helpdesk.imports.TicketImportReport;
+import name.alexkosarev.tutorials.helpdesk.metrics.QueryBudget;
+import name.alexkosarev.tutorials.helpdesk.services.TicketImportService;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Контроллер для массового импорта заявок.
+ *
+ * Данные передаются в теле запроса и читаются потоком, в ответ возвращается отчёт об импорте в формате JSON.
+ * Количество SQL-запросов пропорционально объёму импортируемых данных, поэтому бюджет запросов не ограничивается.
+ *
+ * @author Alexander Kosarev
+ */
+@Controller
+@RequestMapping("tickets/import")
+@AllArgsConstructor
+public class TicketImportController {
+
+    private final TicketImportService service;
+
+    /**
+     * Импорт заявок из CSV.
+     *
+     * @param reader тело запроса
+     * @param locale локаль пользователя
+     * @return отчёт об импорте
+     * @throws IOException в случае ошибки чтения тела запроса
+     */
+    @PostMapping(consumes = "text/csv")
+    @QueryBudget(Integer.MAX_VALUE)
+    @ResponseBody
+    public TicketImportReport importCsv(Reader reader, Locale locale) throws IOException {
+        return service.importCsv(reader, locale);
+    }
+
+    /**
+     * Импорт заявок из JSON Lines.
+     *
+     * @param reader тело запроса
+     * @param locale локаль пользователя
+     * @return отчёт об импорте
+     * @throws IOException в случае ошибки чтения тела запроса
+     */
+    @PostMapping(consumes = {"application/x-ndjson", "application/jsonlines"})
+    @QueryBudget(Integer.MAX_VALUE)
+    @ResponseBody
+    public TicketImportReport importJsonLines(Reader reader, Locale locale) throws IOException {
+        return service.importJsonLines(reader, locale);
+    }
+}
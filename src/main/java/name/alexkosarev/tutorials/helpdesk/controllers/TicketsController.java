@@ -15,29 +15,56 @@
  */
 package name.alexkosarev.tutorials.helpdesk.controllers;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import javax.validation.Valid;
 import lombok.AllArgsConstructor;
+import name.alexkosarev.tutorials.helpdesk.async.JdbcExecutor;
+import name.alexkosarev.tutorials.helpdesk.datasource.ReadReplica;
+import name.alexkosarev.tutorials.helpdesk.entities.ArchivedTicket;
 import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.events.TicketChangeEvent;
 import name.alexkosarev.tutorials.helpdesk.exceptions.EntityNotFoundException;
+import name.alexkosarev.tutorials.helpdesk.exceptions.InvalidCursorException;
+import name.alexkosarev.tutorials.helpdesk.exceptions.SearchResultWindowExceededException;
 import name.alexkosarev.tutorials.helpdesk.forms.TicketForm;
+import name.alexkosarev.tutorials.helpdesk.metrics.QueryBudget;
+import name.alexkosarev.tutorials.helpdesk.pagination.CursorSlice;
+import name.alexkosarev.tutorials.helpdesk.pagination.TicketCursor;
 import name.alexkosarev.tutorials.helpdesk.repositories.TicketCommentRepository;
 import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import name.alexkosarev.tutorials.helpdesk.services.TicketArchiveService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketCountService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketDeletionService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketSearchService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.ModelAndView;
 
 /**
  * Контроллер для управления списком заявок.
  *
+ * Страницы списка, поиска и просмотра заявки обращаются к базе данных в потоках {@link JdbcExecutor}, не занимая
+ * поток контейнера сервлетов на время ожидания.
+ *
  * @author Alexander Kosarev
  */
 @Controller
@@ -45,43 +72,194 @@ import org.springframework.web.servlet.ModelAndView;
 @AllArgsConstructor
 public class TicketsController {
 
+    /**
+     * Максимальный размер страницы при пейджинации по курсору
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 2000;
+
     private final TicketRepository repository;
 
     private final TicketCommentRepository ticketCommentRepository;
 
+    private final TicketCountService ticketCountService;
+
+    private final TicketSearchService ticketSearchService;
+
+    private final TicketDeletionService ticketDeletionService;
+
+    private final TicketArchiveService ticketArchiveService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final JdbcExecutor jdbcExecutor;
+
     /**
      * Отображение списка заявок.
      *
+     * Общее количество заявок не подсчитывается, если включён фоновый подсчёт, в модель добавляется приблизительное
+     * количество страниц. ETag страницы передаётся в модели, и если страница не изменилась с момента предыдущего
+     * запроса клиента, {@link EntityTagInterceptor} отправляет ответ 304 Not Modified без отображения шаблона.
+     *
      * @param page информация о пейджинации и сортировке
+     * @param locale локаль страницы
      * @return модель и шаблон со списком заявок
      */
     @GetMapping
-    public ModelAndView index(Pageable page) {
-        ModelAndView modelAndView = new ModelAndView("tickets/index");
-        modelAndView.addObject("page", repository.findAll(page));
+    @QueryBudget(1)
+    @ReadReplica
+    public CompletableFuture<ModelAndView> index(Pageable page, Locale locale) {
+        return jdbcExecutor.supply(() -> {
+            Slice<Ticket> tickets = repository.findAllBy(page);
+            Long totalPages = ticketCountService.getApproximateTotalPages(tickets.getSize(), tickets.getNumber(),
+                    tickets.hasNext());
+
+            ModelAndView modelAndView = new ModelAndView("tickets/index");
+            modelAndView.addObject("page", tickets);
+            modelAndView.addObject("totalPages", totalPages);
+            modelAndView.addObject(EntityTagInterceptor.ETAG_ATTRIBUTE,
+                    etag(tickets.getContent(), locale, tickets.hasNext(), totalPages));
+
+            return modelAndView;
+        });
+    }
+
+    /**
+     * Отображение списка заявок с пейджинацией по курсору.
+     *
+     * В отличие от {@link #index} не использует OFFSET, поэтому любая страница списка запрашивается так же
+     * быстро, как первая. Условный запрос обрабатывается так же, как в {@link #index}.
+     *
+     * @param cursor курсор, полученный на предыдущей странице, либо пустая строка для первой страницы
+     * @param size размер страницы
+     * @param locale локаль страницы
+     * @return модель и шаблон со списком заявок
+     * @throws InvalidCursorException если курсор не может быть разобран
+     */
+    @GetMapping(params = "cursor")
+    @QueryBudget(2)
+    @ReadReplica
+    public CompletableFuture<ModelAndView> indexByCursor(@RequestParam String cursor,
+            @RequestParam(defaultValue = "20") int size, Locale locale) throws InvalidCursorException {
+        int limit = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        TicketCursor ticketCursor = cursor.isEmpty() ? null : TicketCursor.decode(cursor);
+
+        return jdbcExecutor.supply(() -> {
+            CursorSlice<Ticket> tickets = repository.findAll(ticketCursor, limit);
+
+            ModelAndView modelAndView = new ModelAndView("tickets/index");
+            modelAndView.addObject("page", tickets);
+            modelAndView.addObject(EntityTagInterceptor.ETAG_ATTRIBUTE,
+                    etag(tickets.getContent(), locale, tickets.getPreviousCursor(), tickets.getNextCursor()));
+
+            return modelAndView;
+        });
+    }
+
+    /**
+     * Полнотекстовый поиск заявок по проблеме, описанию проблемы и комментариям.
+     *
+     * @param query поисковый запрос
+     * @param pageable параметры пейджинации
+     * @return модель и шаблон с найденными заявками, упорядоченными по релевантности
+     * @throws SearchResultWindowExceededException если страница лежит за пределами окна результатов поиска
+     */
+    @GetMapping("search")
+    @QueryBudget(1)
+    public CompletableFuture<ModelAndView> search(@RequestParam(name = "q", defaultValue = "") String query, Pageable pageable)
+            throws SearchResultWindowExceededException {
+        ticketSearchService.checkResultWindow(pageable);
+        return jdbcExecutor.supply(() -> {
+            ModelAndView modelAndView = new ModelAndView("tickets/search");
+            modelAndView.addObject("query", query);
+            modelAndView.addObject("page", query.trim().isEmpty() ? new PageImpl<>(Collections.emptyList(), pageable, 0)
+                    : ticketSearchService.search(query, pageable));
+
+            return modelAndView;
+        });
+    }
+
+    /**
+     * Поиск архивных заявок по подстроке проблемы или описания проблемы.
+     *
+     * @param query подстрока, без неё отображаются все архивные заявки
+     * @param pageable параметры пейджинации
+     * @return модель и шаблон с найденными архивными заявками
+     */
+    @GetMapping("archive")
+    @QueryBudget(1)
+    public CompletableFuture<ModelAndView> archive(@RequestParam(name = "q", defaultValue = "") String query, Pageable pageable) {
+        return jdbcExecutor.supply(() -> {
+            ModelAndView modelAndView = new ModelAndView("tickets/archive");
+            modelAndView.addObject("query", query);
+            modelAndView.addObject("page", ticketArchiveService.search(query, pageable));
 
-        return modelAndView;
+            return modelAndView;
+        });
     }
 
     /**
      * Просмотр одной заявки.
      *
+     * Если заявка и её комментарии не изменились с момента предыдущего запроса клиента, комментарии не запрашиваются
+     * и шаблон не отображается. Заявка, перенесённая в архив, отображается по тому же адресу из архива.
+     *
      * @param ticket проблема
+     * @param id идентификатор проблемы для поиска в архиве
      * @param pageable параметры пейджинации и сортировки
-     * @return модель и шаблон с проблемой
-     * @throws EntityNotFoundException если проблема не найдена
+     * @param locale локаль страницы
+     * @param request запрос для проверки условных заголовков
+     * @return модель и шаблон с проблемой или null без асинхронной обработки, если клиенту отправлен ответ
+     * 304 Not Modified; если проблема не найдена ни среди заявок, ни в архиве, результат завершается исключением
+     * {@link EntityNotFoundException}
      */
     @GetMapping("{ticket:\\d+}")
-    public ModelAndView viewOne(@PathVariable Ticket ticket, Pageable pageable) throws EntityNotFoundException {
+    @QueryBudget(3)
+    @ReadReplica
+    public CompletableFuture<ModelAndView> viewOne(@PathVariable Ticket ticket, @PathVariable("ticket") int id,
+            Pageable pageable, Locale locale, WebRequest request) {
         if (ticket == null) {
-            throw new EntityNotFoundException("error.ticket.notFound");
+            return viewArchived(id, pageable);
         }
 
-        ModelAndView modelAndView = new ModelAndView("tickets/viewOne");
-        modelAndView.addObject("ticket", ticket);
-        modelAndView.addObject("comments", ticketCommentRepository.findByTicket(ticket, pageable));
+        if (request.checkNotModified(etag(Collections.singletonList(ticket), locale),
+                ticket.getDateModified().getTime())) {
+            return null;
+        }
+
+        return jdbcExecutor.supply(() -> {
+            ModelAndView modelAndView = new ModelAndView("tickets/viewOne");
+            modelAndView.addObject("ticket", ticket);
+            modelAndView.addObject("comments", ticketCommentRepository.findByTicket(ticket, pageable));
+
+            return modelAndView;
+        });
+    }
+
+    private CompletableFuture<ModelAndView> viewArchived(int id, Pageable pageable) {
+        // архивная заявка тоже читается исполнителем, чтобы поток контейнера не ждал базу данных
+        CompletableFuture<ModelAndView> result = new CompletableFuture<>();
+        jdbcExecutor.supply(() -> {
+            ArchivedTicket ticket = ticketArchiveService.findOne(id);
+            if (ticket == null) {
+                return null;
+            }
+
+            ModelAndView modelAndView = new ModelAndView("tickets/archived");
+            modelAndView.addObject("ticket", ticket);
+            modelAndView.addObject("comments", ticketArchiveService.findComments(id, pageable));
 
-        return modelAndView;
+            return modelAndView;
+        }).whenComplete((modelAndView, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+            } else if (modelAndView == null) {
+                result.completeExceptionally(new EntityNotFoundException("error.ticket.notFound"));
+            } else {
+                result.complete(modelAndView);
+            }
+        });
+
+        return result;
     }
 
     /**
@@ -90,6 +268,7 @@ public class TicketsController {
      * @return модель и шаблон создания заявки
      */
     @GetMapping("create")
+    @QueryBudget(0)
     public ModelAndView createPage() {
         return new ModelAndView("tickets/create");
     }
@@ -103,6 +282,7 @@ public class TicketsController {
      * создания заявки в случае ошибок валидации
      */
     @PostMapping("create")
+    @QueryBudget(2)
     public ModelAndView create(@Valid TicketForm form, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             Map<String, Object> model = new HashMap<>();
@@ -111,7 +291,12 @@ public class TicketsController {
             return new ModelAndView("tickets/create", model, HttpStatus.BAD_REQUEST);
         }
 
-        return new ModelAndView("redirect:/tickets/" + repository.save(form.toTicket()).getId());
+        Ticket ticket = repository.save(form.toTicket());
+        ticketCountService.increment();
+        ticketSearchService.index(ticket);
+        eventPublisher.publishEvent(TicketChangeEvent.ticketCreated(ticket));
+
+        return new ModelAndView("redirect:/tickets/" + ticket.getId());
     }
 
     /**
@@ -122,6 +307,8 @@ public class TicketsController {
      * @throws EntityNotFoundException если заявка не найдена
      */
     @GetMapping("{ticket:\\d+}/edit")
+    @QueryBudget(1)
+    @ReadReplica
     public ModelAndView editPage(@PathVariable Ticket ticket) throws EntityNotFoundException {
         if (ticket == null) {
             throw new EntityNotFoundException("error.ticket.notFound");
@@ -136,16 +323,22 @@ public class TicketsController {
      * @param form данные, отправленные пользователем
      * @param bindingResult результат валидации
      * @param ticket зазявка, к которой применяются изменения
-     * @return перенаправление на страницу просмотра заявки в случае успешной валидации или модель и шаблон формы
-     * редактирования заявки в случае ошибок валидации
+     * @return перенаправление на страницу просмотра заявки в случае успешной валидации, модель и шаблон формы
+     * редактирования заявки в случае ошибок валидации или модель и шаблон конфликта, если заявка была изменена другим
+     * пользователем после открытия формы
      * @throws EntityNotFoundException если заявка не найдена
      */
     @PostMapping("{ticket:\\d+}/edit")
+    @QueryBudget(3)
     public ModelAndView edit(@Valid TicketForm form, BindingResult bindingResult, @PathVariable Ticket ticket) throws EntityNotFoundException {
         if (ticket == null) {
             throw new EntityNotFoundException("error.ticket.notFound");
         }
 
+        if (form.conflictsWith(ticket)) {
+            return conflict(form, ticket);
+        }
+
         if (bindingResult.hasErrors()) {
             Map<String, Object> model = new HashMap<>();
             model.put("ticket", form.toTicket(ticket));
@@ -153,7 +346,28 @@ public class TicketsController {
             return new ModelAndView("tickets/edit", model, HttpStatus.BAD_REQUEST);
         }
 
-        return new ModelAndView("redirect:/tickets/" + repository.save(form.toTicket(ticket)).getId());
+        Ticket savedTicket;
+        try {
+            savedTicket = repository.save(form.toTicket(ticket));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return conflict(form, repository.findOne(ticket.getId()));
+        }
+
+        ticketSearchService.index(savedTicket);
+        eventPublisher.publishEvent(TicketChangeEvent.ticketUpdated(savedTicket));
+
+        return new ModelAndView("redirect:/tickets/" + savedTicket.getId());
+    }
+
+    private static ModelAndView conflict(TicketForm form, Ticket ticket) throws EntityNotFoundException {
+        if (ticket == null) {
+            throw new EntityNotFoundException("error.ticket.notFound");
+        }
+
+        Map<String, Object> model = new HashMap<>();
+        model.put("ticket", ticket);
+        model.put("form", form);
+        return new ModelAndView("tickets/conflict", model, HttpStatus.CONFLICT);
     }
 
     /**
@@ -164,6 +378,8 @@ public class TicketsController {
      * @throws EntityNotFoundException если заявка не найдена
      */
     @GetMapping("{ticket:\\d+}/delete")
+    @QueryBudget(1)
+    @ReadReplica
     public ModelAndView deletePage(@PathVariable Ticket ticket) throws EntityNotFoundException {
         if (ticket == null) {
             throw new EntityNotFoundException("error.ticket.notFound");
@@ -180,13 +396,39 @@ public class TicketsController {
      * @throws EntityNotFoundException если заявка не найдена
      */
     @PostMapping("{ticket:\\d+}/delete")
+    @QueryBudget(3)
     public ModelAndView delete(@PathVariable Ticket ticket) throws EntityNotFoundException {
         if (ticket == null) {
             throw new EntityNotFoundException("error.ticket.notFound");
         }
 
-        repository.delete(ticket);
+        ticketDeletionService.delete(ticket);
+        ticketCountService.decrement();
+        ticketSearchService.delete(ticket);
+        eventPublisher.publishEvent(TicketChangeEvent.ticketDeleted(ticket.getId()));
 
         return new ModelAndView("redirect:/tickets");
     }
+
+    /**
+     * Вычисление ETag отображаемой страницы по идентификаторам и датам изменения заявок, локали и прочему
+     * состоянию страницы.
+     *
+     * @param tickets заявки на странице
+     * @param locale локаль страницы
+     * @param state прочее состояние, влияющее на содержимое страницы
+     * @return значение ETag
+     */
+    private static String etag(List<Ticket> tickets, Locale locale, Object... state) {
+        StringBuilder builder = new StringBuilder(locale.toLanguageTag());
+        for (Object value : state) {
+            builder.append('|').append(value);
+        }
+        for (Ticket ticket : tickets) {
+            builder.append('|').append(ticket.getId()).append(':')
+                    .append(ticket.getDateModified() == null ? 0 : ticket.getDateModified().getTime());
+        }
+
+        return DigestUtils.md5DigestAsHex(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
 }
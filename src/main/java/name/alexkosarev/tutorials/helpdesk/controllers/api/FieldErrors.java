@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.controllers.api;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import name.alexkosarev.tutorials.helpdesk.projections.FieldErrorView;
+import org.springframework.context.MessageSource;
+import org.springframework.validation.BindingResult;
+
+/**
+ * Преобразование ошибок валидации в представление для ответа API.
+ *
+ * Как и в шаблонах, сообщение ограничения используется как код сообщения, а при его отсутствии выводится как есть.
+ *
+ * @author Alexander Kosarev
+ */
+final class FieldErrors {
+
+    private FieldErrors() {
+    }
+
+    static List<FieldErrorView> of(BindingResult bindingResult, MessageSource messageSource, Locale locale) {
+        return bindingResult.getFieldErrors().stream()
+                .map(error -> new FieldErrorView(error.getField(),
+                        messageSource.getMessage(error.getDefaultMessage(), null, error.getDefaultMessage(), locale)))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.controllers.api;
+
+import java.util.Locale;
+import java.util.Objects;
+import javax.validation.Valid;
+import lombok.AllArgsConstructor;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.entities.TicketComment;
+import name.alexkosarev.tutorials.helpdesk.events.TicketChangeEvent;
+import name.alexkosarev.tutorials.helpdesk.exceptions.EntityNotFoundException;
+import name.alexkosarev.tutorials.helpdesk.forms.TicketCommentForm;
+import name.alexkosarev.tutorials.helpdesk.metrics.QueryBudget;
+import name.alexkosarev.tutorials.helpdesk.pagination.SliceView;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentView;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketCommentRepository;
+import name.alexkosarev.tutorials.helpdesk.services.TicketCommentService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketSearchService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.MessageSource;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * REST API для управления комментариями заявки.
+ *
+ * @author Alexander Kosarev
+ */
+@RestController
+@RequestMapping("api/tickets/{ticket:\\d+}/comments")
+@AllArgsConstructor
+public class TicketCommentsApiController {
+
+    private final TicketCommentRepository repository;
+
+    private final TicketCommentService ticketCommentService;
+
+    private final TicketSearchService ticketSearchService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final MessageSource messageSource;
+
+    /**
+     * Страница комментариев заявки.
+     *
+     * @param ticket заявка
+     * @param pageable параметры пейджинации и сортировки
+     * @return страница комментариев
+     * @throws EntityNotFoundException если заявка не найдена
+     */
+    @GetMapping
+    @QueryBudget(2)
+    public SliceView<TicketCommentView> index(@PathVariable Ticket ticket, Pageable pageable) throws EntityNotFoundException {
+        if (ticket == null) {
+            throw new EntityNotFoundException("error.ticket.notFound");
+        }
+
+        return SliceView.of(repository.findByTicket(ticket, pageable));
+    }
+
+    /**
+     * Получение комментария.
+     *
+     * @param ticket заявка
+     * @param comment комментарий
+     * @return комментарий
+     * @throws EntityNotFoundException если комментарий или заявка не найдены
+     */
+    @GetMapping("{comment:\\d+}")
+    @QueryBudget(2)
+    public TicketCommentView viewOne(@PathVariable Ticket ticket, @PathVariable TicketComment comment) throws EntityNotFoundException {
+        checkRelated(ticket, comment);
+
+        return new TicketCommentView(comment.getId(), comment.getComment(), comment.getDateCreated());
+    }
+
+    /**
+     * Создание комментария.
+     *
+     * @param form данные комментария
+     * @param bindingResult результат валидации
+     * @param ticket заявка
+     * @param locale локаль сообщений об ошибках
+     * @param uriBuilder построитель адреса созданного комментария
+     * @return созданный комментарий со статусом 201 Created либо ошибки валидации со статусом 400 Bad Request
+     * @throws EntityNotFoundException если заявка не найдена
+     */
+    @PostMapping
+    @QueryBudget(5)
+    public ResponseEntity<?> create(@Valid @RequestBody TicketCommentForm form, BindingResult bindingResult,
+            @PathVariable Ticket ticket, Locale locale, UriComponentsBuilder uriBuilder) throws EntityNotFoundException {
+        if (ticket == null) {
+            throw new EntityNotFoundException("error.ticket.notFound");
+        }
+
+        if (bindingResult.hasErrors()) {
+            return ResponseEntity.badRequest().body(FieldErrors.of(bindingResult, messageSource, locale));
+        }
+
+        TicketComment comment = ticketCommentService.create(form.toTicketComment(ticket));
+        ticketSearchService.index(ticket);
+        eventPublisher.publishEvent(TicketChangeEvent.commentCreated(comment));
+
+        return ResponseEntity.created(uriBuilder.path("/api/tickets/{ticket}/comments/{id}")
+                .buildAndExpand(ticket.getId(), comment.getId()).toUri())
+                .body(new TicketCommentView(comment.getId(), comment.getComment(), comment.getDateCreated()));
+    }
+
+    /**
+     * Удаление комментария.
+     *
+     * @param ticket заявка
+     * @param comment комментарий
+     * @return ответ со статусом 204 No Content
+     * @throws EntityNotFoundException если комментарий или заявка не найдены
+     */
+    @DeleteMapping("{comment:\\d+}")
+    @QueryBudget(6)
+    public ResponseEntity<Void> delete(@PathVariable Ticket ticket, @PathVariable TicketComment comment) throws EntityNotFoundException {
+        checkRelated(ticket, comment);
+
+        ticketCommentService.delete(comment);
+        ticketSearchService.index(ticket);
+        eventPublisher.publishEvent(TicketChangeEvent.commentDeleted(comment));
+
+        return ResponseEntity.noContent().build();
+    }
+
+    private static void checkRelated(Ticket ticket, TicketComment comment) throws EntityNotFoundException {
+        if (comment == null) {
+            throw new EntityNotFoundException("error.ticketComment.notFound");
+        }
+        if (ticket == null || !Objects.equals(comment.getTicket(), ticket)) {
+            throw new EntityNotFoundException("error.ticket.notFound");
+        }
+    }
+}
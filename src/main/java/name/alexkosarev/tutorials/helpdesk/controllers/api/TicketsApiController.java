@@ -0,0 +1,234 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.controllers.api;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.validation.Valid;
+import lombok.AllArgsConstructor;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.events.TicketChangeEvent;
+import name.alexkosarev.tutorials.helpdesk.exceptions.EntityNotFoundException;
+import name.alexkosarev.tutorials.helpdesk.exceptions.InvalidCursorException;
+import name.alexkosarev.tutorials.helpdesk.forms.TicketForm;
+import name.alexkosarev.tutorials.helpdesk.metrics.QueryBudget;
+import name.alexkosarev.tutorials.helpdesk.pagination.CursorSlice;
+import name.alexkosarev.tutorials.helpdesk.pagination.TicketCursor;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import name.alexkosarev.tutorials.helpdesk.services.TicketCountService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketDeletionService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketSearchService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.MessageSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * REST API для управления заявками.
+ *
+ * @author Alexander Kosarev
+ */
+@RestController
+@RequestMapping("api/tickets")
+@AllArgsConstructor
+public class TicketsApiController {
+
+    /**
+     * Максимальный размер страницы списка заявок
+     */
+    private static final int MAX_PAGE_SIZE = 2000;
+
+    /**
+     * Максимальное количество заявок, удаляемых одним запросом
+     */
+    private static final int MAX_DELETE_SIZE = 1000;
+
+    private final TicketRepository repository;
+
+    private final TicketCountService ticketCountService;
+
+    private final TicketSearchService ticketSearchService;
+
+    private final TicketDeletionService ticketDeletionService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final MessageSource messageSource;
+
+    /**
+     * Список заявок с пейджинацией по курсору.
+     *
+     * @param cursor курсор, полученный на предыдущей странице, либо пустая строка для первой страницы
+     * @param size размер страницы
+     * @return страница заявок
+     * @throws InvalidCursorException если курсор не может быть разобран
+     */
+    @GetMapping
+    @QueryBudget(2)
+    public CursorSlice<Ticket> index(@RequestParam(defaultValue = "") String cursor,
+            @RequestParam(defaultValue = "20") int size) throws InvalidCursorException {
+        return repository.findAll(cursor.isEmpty() ? null : TicketCursor.decode(cursor),
+                Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+    }
+
+    /**
+     * Получение заявки.
+     *
+     * @param ticket заявка
+     * @return заявка
+     * @throws EntityNotFoundException если заявка не найдена
+     */
+    @GetMapping("{ticket:\\d+}")
+    @QueryBudget(1)
+    public Ticket viewOne(@PathVariable Ticket ticket) throws EntityNotFoundException {
+        if (ticket == null) {
+            throw new EntityNotFoundException("error.ticket.notFound");
+        }
+
+        return ticket;
+    }
+
+    /**
+     * Создание заявки.
+     *
+     * @param form данные заявки
+     * @param bindingResult результат валидации
+     * @param locale локаль сообщений об ошибках
+     * @param uriBuilder построитель адреса созданной заявки
+     * @return созданная заявка со статусом 201 Created либо ошибки валидации со статусом 400 Bad Request
+     */
+    @PostMapping
+    @QueryBudget(2)
+    public ResponseEntity<?> create(@Valid @RequestBody TicketForm form, BindingResult bindingResult, Locale locale,
+            UriComponentsBuilder uriBuilder) {
+        if (bindingResult.hasErrors()) {
+            return ResponseEntity.badRequest().body(FieldErrors.of(bindingResult, messageSource, locale));
+        }
+
+        Ticket ticket = repository.save(form.toTicket());
+        ticketCountService.increment();
+        ticketSearchService.index(ticket);
+        eventPublisher.publishEvent(TicketChangeEvent.ticketCreated(ticket));
+
+        return ResponseEntity.created(uriBuilder.path("/api/tickets/{id}").buildAndExpand(ticket.getId()).toUri())
+                .body(ticket);
+    }
+
+    /**
+     * Изменение заявки.
+     *
+     * @param form данные заявки
+     * @param bindingResult результат валидации
+     * @param ticket изменяемая заявка
+     * @param locale локаль сообщений об ошибках
+     * @return изменённая заявка, ошибки валидации со статусом 400 Bad Request либо текущее состояние заявки со статусом
+     * 409 Conflict, если заявка была изменена после получения клиентом указанной версии
+     * @throws EntityNotFoundException если заявка не найдена
+     */
+    @PutMapping("{ticket:\\d+}")
+    @QueryBudget(3)
+    public ResponseEntity<?> edit(@Valid @RequestBody TicketForm form, BindingResult bindingResult,
+            @PathVariable Ticket ticket, Locale locale) throws EntityNotFoundException {
+        if (ticket == null) {
+            throw new EntityNotFoundException("error.ticket.notFound");
+        }
+
+        if (form.conflictsWith(ticket)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ticket);
+        }
+
+        if (bindingResult.hasErrors()) {
+            return ResponseEntity.badRequest().body(FieldErrors.of(bindingResult, messageSource, locale));
+        }
+
+        Ticket savedTicket;
+        try {
+            savedTicket = repository.save(form.toTicket(ticket));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            Ticket currentTicket = repository.findOne(ticket.getId());
+            if (currentTicket == null) {
+                throw new EntityNotFoundException("error.ticket.notFound");
+            }
+
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(currentTicket);
+        }
+
+        ticketSearchService.index(savedTicket);
+        eventPublisher.publishEvent(TicketChangeEvent.ticketUpdated(savedTicket));
+
+        return ResponseEntity.ok(savedTicket);
+    }
+
+    /**
+     * Удаление заявки.
+     *
+     * @param ticket заявка
+     * @return ответ со статусом 204 No Content
+     * @throws EntityNotFoundException если заявка не найдена
+     */
+    @DeleteMapping("{ticket:\\d+}")
+    @QueryBudget(3)
+    public ResponseEntity<Void> delete(@PathVariable Ticket ticket) throws EntityNotFoundException {
+        if (ticket == null) {
+            throw new EntityNotFoundException("error.ticket.notFound");
+        }
+
+        ticketDeletionService.delete(ticket);
+        ticketCountService.decrement();
+        ticketSearchService.delete(ticket);
+        eventPublisher.publishEvent(TicketChangeEvent.ticketDeleted(ticket.getId()));
+
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Удаление нескольких заявок вместе с комментариями.
+     *
+     * Заявки удаляются тремя запросами независимо от их количества, несуществующие идентификаторы пропускаются, а
+     * события публикуются и индекс обновляется только для удалённых заявок.
+     *
+     * @param ids идентификаторы заявок
+     * @return ответ со статусом 204 No Content либо 400 Bad Request, если идентификаторов больше
+     * {@value #MAX_DELETE_SIZE}
+     */
+    @DeleteMapping(params = "id")
+    @QueryBudget(3)
+    public ResponseEntity<Void> deleteAll(@RequestParam("id") Set<Integer> ids) {
+        if (ids.size() > MAX_DELETE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Integer> deletedIds = ticketDeletionService.delete(ids);
+        ticketCountService.decrement(deletedIds.size());
+        ticketSearchService.delete(deletedIds);
+        deletedIds.forEach(id -> eventPublisher.publishEvent(TicketChangeEvent.ticketDeleted(id)));
+
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.datasource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Источник данных, направляющий транзакции только для чтения на реплики, а остальные обращения - в основную базу
+ * данных.
+ *
+ * Транзакция попадает на реплику, только если текущий поток выполняет обработчик, отмеченный {@link ReadReplica}.
+ * Реплики выбираются по кругу. Решение принимается при получении соединения, поэтому источник данных должен быть
+ * обёрнут в {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, откладывающий получение
+ * соединения до первого SQL-запроса, когда признак транзакции только для чтения уже установлен.
+ *
+ * @author Alexander Kosarev
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> REPLICA_ALLOWED = new ThreadLocal<>();
+
+    private final List<DataSource> dataSources = new ArrayList<>();
+
+    private final List<String> replicas = new ArrayList<>();
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(PRIMARY, primary);
+        dataSources.add(primary);
+        for (DataSource replica : replicas) {
+            String key = "replica-" + this.replicas.size();
+            targetDataSources.put(key, replica);
+            dataSources.add(replica);
+            this.replicas.add(key);
+        }
+
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Разрешение или запрет обращений к репликам в текущем потоке.
+     *
+     * @param allowed true, если транзакции только для чтения текущего потока могут выполняться на реплике
+     */
+    public static void setReplicaAllowed(boolean allowed) {
+        if (allowed) {
+            REPLICA_ALLOWED.set(Boolean.TRUE);
+        } else {
+            REPLICA_ALLOWED.remove();
+        }
+    }
+
+    /**
+     * Разрешены ли обращения к репликам в текущем потоке.
+     *
+     * @return true, если транзакции только для чтения текущего потока могут выполняться на реплике
+     */
+    public static boolean isReplicaAllowed() {
+        return REPLICA_ALLOWED.get() != null;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty() || !isReplicaAllowed()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+
+        return replicas.get(Math.floorMod(counter.getAndIncrement(), replicas.size()));
+    }
+
+    /**
+     * Закрытие пулов соединений основной базы данных и реплик.
+     */
+    public void close() {
+        for (DataSource dataSource : dataSources) {
+            try {
+                ReflectionUtils.invokeMethod(ReflectionUtils.findMethod(dataSource.getClass(), "close"), dataSource);
+            } catch (RuntimeException e) {
+                log.warn("Failed to close data source {}", dataSource, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.datasource;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import name.alexkosarev.tutorials.helpdesk.HttpRequests;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Выбор между репликой и основной базой данных для обработчика запроса.
+ *
+ * Обработчики, отмеченные {@link ReadReplica}, могут читать с реплики. Запрос, изменяющий данные, получает cookie,
+ * и в течение заданного времени запросы этого клиента читают только из основной базы данных: после перенаправления
+ * со страницы создания или редактирования пользователь видит свои изменения, даже если реплика ещё отстаёт.
+ *
+ * @author Alexander Kosarev
+ */
+public class ReplicaRoutingInterceptor extends HandlerInterceptorAdapter {
+
+    /**
+     * Имя cookie, закрепляющего клиента за основной базой данных
+     */
+    public static final String PRIMARY_COOKIE = "helpdesk-primary";
+
+    private final int stickinessSeconds;
+
+    public ReplicaRoutingInterceptor(int stickinessSeconds) {
+        this.stickinessSeconds = stickinessSeconds;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        boolean modifying = HttpRequests.isModifying(request);
+        if (modifying) {
+            Cookie cookie = new Cookie(PRIMARY_COOKIE, "1");
+            cookie.setPath("/");
+            cookie.setMaxAge(stickinessSeconds);
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+
+        ReplicaRoutingDataSource.setReplicaAllowed(handler instanceof HandlerMethod
+                && ((HandlerMethod) handler).hasMethodAnnotation(ReadReplica.class)
+                && !modifying && WebUtils.getCookie(request, PRIMARY_COOKIE) == null);
+
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        ReplicaRoutingDataSource.setReplicaAllowed(false);
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+            Object handler) {
+        ReplicaRoutingDataSource.setReplicaAllowed(false);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.entities;
+
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Заявка, перенесённая в архив.
+ *
+ * Архивные заявки доступны только для чтения и сохраняют идентификаторы, которые они имели до переноса.
+ *
+ * @author Alexander Kosarev
+ */
+@Entity
+@Table(name = "ticket_archive")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedTicket {
+
+    @Id
+    private int id;
+
+    @Column(nullable = false)
+    private String issue;
+
+    @Column(columnDefinition = "TEXT")
+    private String issueDetails;
+
+    @Column(nullable = false)
+    @Temporal(javax.persistence.TemporalType.TIMESTAMP)
+    private Date dateCreated;
+
+    @Column(nullable = false)
+    @Temporal(javax.persistence.TemporalType.TIMESTAMP)
+    private Date dateModified;
+
+    @Column(nullable = false)
+    private int commentCount;
+
+    @Column(nullable = false)
+    @Temporal(javax.persistence.TemporalType.TIMESTAMP)
+    private Date lastActivity;
+
+    /**
+     * Дата переноса заявки в архив
+     */
+    @Column(nullable = false)
+    @Temporal(javax.persistence.TemporalType.TIMESTAMP)
+    private Date dateArchived;
+}
@@ -16,28 +16,51 @@
 package name.alexkosarev.tutorials.helpdesk.entities;
 
 import java.util.Date;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Temporal;
+import javax.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.OptimisticLock;
+import org.hibernate.annotations.Parameter;
 
 /**
  * Заявка с описанием проблемы пользователя.
  *
+ * Обновление затрагивает только изменённые столбцы, поэтому редактирование заявки не перезаписывает счётчик
+ * комментариев, изменённый параллельно.
+ *
  * @author Alexander Kosarev
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Ticket {
 
+    /**
+     * Идентификатор из последовательности ticket_seq, выделяемый блоками по 50 значений без обращения к базе данных для
+     * каждой записи, что позволяет Hibernate группировать вставки в пакеты JDBC
+     */
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "ticket_seq")
+    @GenericGenerator(name = "ticket_seq", strategy = "enhanced-sequence", parameters = {
+        @Parameter(name = "sequence_name", value = "ticket_seq"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     private int id;
 
     /**
@@ -58,4 +81,35 @@ public class Ticket {
     @Column(nullable = false, updatable = false)
     @Temporal(javax.persistence.TemporalType.TIMESTAMP)
     private Date dateCreated;
+
+    /**
+     * Дата последнего изменения заявки или её комментариев
+     */
+    @Column(nullable = false)
+    @OptimisticLock(excluded = true)
+    @Temporal(javax.persistence.TemporalType.TIMESTAMP)
+    private Date dateModified;
+
+    /**
+     * Количество комментариев заявки, изменяемое вместе с добавлением и удалением комментариев
+     */
+    @Column(nullable = false)
+    @OptimisticLock(excluded = true)
+    private int commentCount;
+
+    /**
+     * Дата создания заявки либо последнего добавления или удаления комментария
+     */
+    @Column(nullable = false)
+    @Temporal(javax.persistence.TemporalType.TIMESTAMP)
+    @OptimisticLock(excluded = true)
+    private Date lastActivity;
+
+    /**
+     * Версия заявки, увеличиваемая при каждом изменении описания проблемы. Комментарии не меняют версию, так как
+     * обновление счётчиков защищено пессимистической блокировкой
+     */
+    @Version
+    @Column(nullable = false)
+    private int version;
 }
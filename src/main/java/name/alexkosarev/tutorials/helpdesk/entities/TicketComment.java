@@ -16,8 +16,10 @@
 package name.alexkosarev.tutorials.helpdesk.entities;
 
 import java.util.Date;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
@@ -25,6 +27,10 @@ import javax.persistence.Temporal;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 /**
  * Комментарий к заявке.
@@ -32,13 +38,20 @@ import lombok.NoArgsConstructor;
  * @author Alexander Kosarev
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class TicketComment {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "ticket_comment_seq")
+    @GenericGenerator(name = "ticket_comment_seq", strategy = "enhanced-sequence", parameters = {
+        @Parameter(name = "sequence_name", value = "ticket_comment_seq"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     private int id;
 
     @Column(columnDefinition = "TEXT")
@@ -47,6 +60,6 @@ public class TicketComment {
     @Temporal(javax.persistence.TemporalType.TIMESTAMP)
     private Date dateCreated;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Ticket ticket;
 }
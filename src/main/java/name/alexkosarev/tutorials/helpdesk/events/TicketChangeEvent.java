@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.events;
+
+import java.util.Date;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.entities.TicketComment;
+
+/**
+ * Изменение заявки или её комментариев, публикуемое после фиксации изменения и передаваемое подписчикам
+ * {@link TicketEventBus}.
+ *
+ * Событие содержит только идентификаторы и краткое описание изменения, по которым клиент решает, нужно ли
+ * обновлять страницу.
+ *
+ * @author Alexander Kosarev
+ */
+@Data
+@AllArgsConstructor
+public class TicketChangeEvent {
+
+    /**
+     * Вид изменения
+     */
+    private TicketChangeType type;
+
+    /**
+     * Идентификатор заявки
+     */
+    private int ticketId;
+
+    /**
+     * Идентификатор комментария для изменений комментариев
+     */
+    private Integer commentId;
+
+    /**
+     * Проблема для созданной или изменённой заявки
+     */
+    private String issue;
+
+    /**
+     * Дата изменения
+     */
+    private Date date;
+
+    public static TicketChangeEvent ticketCreated(Ticket ticket) {
+        return new TicketChangeEvent(TicketChangeType.TICKET_CREATED, ticket.getId(), null, ticket.getIssue(), new Date());
+    }
+
+    public static TicketChangeEvent ticketUpdated(Ticket ticket) {
+        return new TicketChangeEvent(TicketChangeType.TICKET_UPDATED, ticket.getId(), null, ticket.getIssue(), new Date());
+    }
+
+    public static TicketChangeEvent ticketDeleted(int ticketId) {
+        return new TicketChangeEvent(TicketChangeType.TICKET_DELETED, ticketId, null, null, new Date());
+    }
+
+    public static TicketChangeEvent commentCreated(TicketComment comment) {
+        return new TicketChangeEvent(TicketChangeType.COMMENT_CREATED, comment.getTicket().getId(), comment.getId(),
+                null, new Date());
+    }
+
+    public static TicketChangeEvent commentDeleted(TicketComment comment) {
+        return new TicketChangeEvent(TicketChangeType.COMMENT_DELETED, comment.getTicket().getId(), comment.getId(),
+                null, new Date());
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.events;
+
+/**
+ * Вид изменения заявки.
+ *
+ * @author Alexander Kosarev
+ */
+public enum TicketChangeType {
+
+    TICKET_CREATED,
+    TICKET_UPDATED,
+    TICKET_DELETED,
+    COMMENT_CREATED,
+    COMMENT_DELETED
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.events;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import name.alexkosarev.tutorials.helpdesk.exceptions.TooManySubscribersException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Рассылка изменений заявок подписчикам Server-Sent Events.
+ *
+ * Обработчики, изменяющие заявки и комментарии, публикуют {@link TicketChangeEvent} через
+ * {@link org.springframework.context.ApplicationEventPublisher}, шина раскладывает событие по буферам подписчиков
+ * на все заявки или на одну заявку и возвращает управление, не дожидаясь отправки. Отправку выполняет небольшой пул
+ * потоков, по одной задаче на подписчика с непустым буфером.
+ *
+ * Буфер каждого подписчика ограничен: если медленный клиент не успевает получать события и буфер переполняется,
+ * накопленные события отбрасываются, клиент получает событие reset, после которого должен перечитать страницу, и
+ * подписка закрывается. Количество подписчиков также ограничено.
+ *
+ * Отправка события блокирует поток отправки до записи в сокет, поэтому клиент, который медленно читает ответ, занимает
+ * общий поток и задерживает остальных подписчиков. Время записи ограничено таймаутом соединения сервера, а подписка, на
+ * отправку события которой ушло больше заданного порога, закрывается так же, как при переполнении буфера.
+ *
+ * @author Alexander Kosarev
+ */
+@Slf4j
+@Component
+public class TicketEventBus implements DisposableBean {
+
+    /**
+     * Имя события, после которого клиент должен перечитать страницу
+     */
+    public static final String RESET_EVENT = "reset";
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    private final ThreadPoolExecutor executor;
+
+    private final int bufferSize;
+
+    private final long timeout;
+
+    private final int maxSubscribers;
+
+    private final long slowSendThreshold;
+
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    private final AtomicLong slowSubscriberCount = new AtomicLong();
+
+    public TicketEventBus(@Value("${helpdesk.events.sender-threads:2}") int senderThreads,
+            @Value("${helpdesk.events.buffer-size:64}") int bufferSize,
+            @Value("${helpdesk.events.timeout:300000}") long timeout,
+            @Value("${helpdesk.events.max-subscribers:1000}") int maxSubscribers,
+            @Value("${helpdesk.events.slow-send-threshold:1000}") long slowSendThreshold) {
+        this.executor = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("ticket-events-"));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        this.maxSubscribers = maxSubscribers;
+        this.slowSendThreshold = TimeUnit.MILLISECONDS.toNanos(slowSendThreshold);
+    }
+
+    /**
+     * Подписка на изменения заявок.
+     *
+     * @param ticketId идентификатор заявки или null для подписки на изменения всех заявок
+     * @return поток событий
+     * @throws TooManySubscribersException если достигнуто максимальное количество подписчиков
+     */
+    public SseEmitter subscribe(Integer ticketId) throws TooManySubscribersException {
+        if (subscriptions.size() >= maxSubscribers) {
+            throw new TooManySubscribersException("Ticket event subscribers limit reached");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeout);
+        Subscription subscription = new Subscription(ticketId, emitter);
+        subscriptions.add(subscription);
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(() -> subscriptions.remove(subscription));
+
+        return emitter;
+    }
+
+    /**
+     * Передача изменения подписчикам.
+     *
+     * @param event изменение заявки
+     */
+    @EventListener
+    public void publish(TicketChangeEvent event) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.ticketId == null || subscription.ticketId == event.getTicketId()) {
+                subscription.offer(event);
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    public long getSlowSubscriberCount() {
+        return slowSubscriberCount.get();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        subscriptions.forEach(subscription -> subscription.emitter.complete());
+    }
+
+    private final class Subscription {
+
+        private final Integer ticketId;
+
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<TicketChangeEvent> buffer = new ArrayBlockingQueue<>(bufferSize);
+
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private volatile boolean overflowed;
+
+        Subscription(Integer ticketId, SseEmitter emitter) {
+            this.ticketId = ticketId;
+            this.emitter = emitter;
+        }
+
+        void offer(TicketChangeEvent event) {
+            if (!buffer.offer(event)) {
+                overflowed = true;
+                buffer.clear();
+            }
+
+            schedule();
+        }
+
+        private void schedule() {
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::send);
+                } catch (RejectedExecutionException e) {
+                    sending.set(false);
+                }
+            }
+        }
+
+        private void send() {
+            try {
+                if (overflowed) {
+                    overflowCount.incrementAndGet();
+                    subscriptions.remove(this);
+                    emitter.send(SseEmitter.event().name(RESET_EVENT).data(""));
+                    emitter.complete();
+                    return;
+                }
+
+                TicketChangeEvent event;
+                while ((event = buffer.poll()) != null) {
+                    long started = System.nanoTime();
+                    emitter.send(event);
+                    if (System.nanoTime() - started > slowSendThreshold) {
+                        slowSubscriberCount.incrementAndGet();
+                        subscriptions.remove(this);
+                        buffer.clear();
+                        emitter.send(SseEmitter.event().name(RESET_EVENT).data(""));
+                        emitter.complete();
+                        return;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Ticket event subscriber is gone", e);
+                subscriptions.remove(this);
+            } finally {
+                sending.set(false);
+            }
+
+            if ((overflowed || !buffer.isEmpty()) && subscriptions.contains(this)) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Очередь исполнителя обращений к базе данных переполнена.
+ *
+ * @author Alexander Kosarev
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class JdbcExecutorRejectedException extends Exception {
+
+    public JdbcExecutorRejectedException() {
+    }
+
+    public JdbcExecutorRejectedException(String message) {
+        super(message);
+    }
+
+    public JdbcExecutorRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public JdbcExecutorRejectedException(Throwable cause) {
+        super(cause);
+    }
+
+    public JdbcExecutorRejectedException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.exports;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.List;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentExport;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+/**
+ * Выгрузка заявок в CSV.
+ *
+ * Каждый комментарий выгружается отдельной строкой вместе с полями заявки, заявка без комментариев выгружается одной
+ * строкой с пустыми полями комментария. Даты записываются в формате ISO 8601.
+ *
+ * @author Alexander Kosarev
+ */
+public class CsvTicketExportWriter implements TicketExportWriter {
+
+    private final CSVPrinter printer;
+
+    public CsvTicketExportWriter(Writer writer) throws IOException {
+        this.printer = CSVFormat.DEFAULT
+                .withHeader("id", "issue", "issueDetails", "dateCreated", "commentId", "comment", "commentDateCreated")
+                .print(writer);
+    }
+
+    @Override
+    public void write(Ticket ticket, List<TicketCommentExport> comments) throws IOException {
+        if (comments.isEmpty()) {
+            printer.printRecord(ticket.getId(), ticket.getIssue(), ticket.getIssueDetails(),
+                    format(ticket.getDateCreated()), null, null, null);
+        }
+
+        for (TicketCommentExport comment : comments) {
+            printer.printRecord(ticket.getId(), ticket.getIssue(), ticket.getIssueDetails(),
+                    format(ticket.getDateCreated()), comment.getId(), comment.getComment(),
+                    format(comment.getDateCreated()));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        printer.close();
+    }
+
+    private static String format(Date date) {
+        return date == null ? null : date.toInstant().toString();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.exports;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.List;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentExport;
+
+/**
+ * Выгрузка заявок в JSON Lines.
+ *
+ * Каждая заявка записывается отдельной строкой в виде объекта с массивом comments. Даты записываются в формате
+ * ISO 8601.
+ *
+ * @author Alexander Kosarev
+ */
+public class JsonLinesTicketExportWriter implements TicketExportWriter {
+
+    private final JsonGenerator generator;
+
+    public JsonLinesTicketExportWriter(JsonFactory jsonFactory, Writer writer) throws IOException {
+        this.generator = jsonFactory.createGenerator(writer);
+        this.generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+    }
+
+    @Override
+    public void write(Ticket ticket, List<TicketCommentExport> comments) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", ticket.getId());
+        generator.writeStringField("issue", ticket.getIssue());
+        generator.writeStringField("issueDetails", ticket.getIssueDetails());
+        generator.writeStringField("dateCreated", format(ticket.getDateCreated()));
+
+        generator.writeArrayFieldStart("comments");
+        for (TicketCommentExport comment : comments) {
+            generator.writeStartObject();
+            generator.writeNumberField("id", comment.getId());
+            generator.writeStringField("comment", comment.getComment());
+            generator.writeStringField("dateCreated", format(comment.getDateCreated()));
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    private static String format(Date date) {
+        return date == null ? null : date.toInstant().toString();
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.exports;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentExport;
+
+/**
+ * Запись выгружаемых заявок в определённом формате.
+ *
+ * @author Alexander Kosarev
+ */
+public interface TicketExportWriter extends Closeable {
+
+    /**
+     * Запись заявки вместе с её комментариями.
+     *
+     * @param ticket заявка
+     * @param comments комментарии к заявке
+     * @throws IOException в случае ошибки записи
+     */
+    void write(Ticket ticket, List<TicketCommentExport> comments) throws IOException;
+}
@@ -39,13 +39,27 @@ public class TicketForm {
 
     private String issueDetails;
 
+    private Integer version;
+
     public Ticket toTicket() {
-        return toTicket(new Ticket(0, issue, issueDetails, new Date()));
+        Date now = new Date();
+        return toTicket(new Ticket(0, issue, issueDetails, now, now, 0, now, 0));
+    }
+
+    /**
+     * Проверка, была ли заявка изменена после того, как пользователь открыл форму.
+     *
+     * @param ticket текущее состояние заявки
+     * @return true, если форма отправлена для другой версии заявки
+     */
+    public boolean conflictsWith(Ticket ticket) {
+        return version != null && version != ticket.getVersion();
     }
 
     public Ticket toTicket(Ticket ticket) {
         ticket.setIssue(issue);
         ticket.setIssueDetails(issueDetails);
+        ticket.setDateModified(new Date());
 
         return ticket;
     }
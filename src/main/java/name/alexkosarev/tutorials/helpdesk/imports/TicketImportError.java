@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.imports;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ошибки одной строки импорта.
+ *
+ * @author Alexander Kosarev
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketImportError {
+
+    /**
+     * Номер строки данных, начиная с единицы, без учёта заголовка
+     */
+    private long row;
+
+    private List<String> messages;
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.imports;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * Результат импорта заявок.
+ *
+ * @author Alexander Kosarev
+ */
+@Data
+public class TicketImportReport {
+
+    /**
+     * Количество импортированных заявок
+     */
+    private int imported;
+
+    /**
+     * Общее количество строк, не прошедших разбор или валидацию
+     */
+    private int errorCount;
+
+    /**
+     * Строки, не прошедшие разбор или валидацию, но не больше ограничения helpdesk.tickets.import.max-errors
+     */
+    private List<TicketImportError> errors = new ArrayList<>();
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.messages;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.context.MessageSource;
+import org.springframework.context.MessageSourceResolvable;
+import org.springframework.context.NoSuchMessageException;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Источник сообщений, запоминающий разрешённые сообщения без аргументов для каждой локали.
+ *
+ * Шаблоны запрашивают одни и те же сообщения на каждой странице, поэтому после первого обращения сообщение
+ * выдаётся из неблокирующей таблицы без обхода бандлов и цепочки локалей. Сообщения с аргументами и
+ * {@link MessageSourceResolvable} разрешаются исходным источником, который сам кеширует {@link java.text.MessageFormat}.
+ * Количество запоминаемых локалей ограничено, так как локаль может быть задана клиентом.
+ *
+ * @author Alexander Kosarev
+ */
+public class CachingMessageSource implements MessageSource {
+
+    /**
+     * Максимальное количество локалей, для которых запоминаются сообщения
+     */
+    static final int MAX_LOCALES = 16;
+
+    private final MessageSource delegate;
+
+    private final ConcurrentMap<Locale, ConcurrentMap<String, Optional<String>>> messages = new ConcurrentHashMap<>();
+
+    public CachingMessageSource(MessageSource delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getMessage(String code, Object[] args, String defaultMessage, Locale locale) {
+        if (!ObjectUtils.isEmpty(args)) {
+            return delegate.getMessage(code, args, defaultMessage, locale);
+        }
+
+        String message = resolve(code, locale);
+        return message != null ? message : defaultMessage;
+    }
+
+    @Override
+    public String getMessage(String code, Object[] args, Locale locale) throws NoSuchMessageException {
+        if (!ObjectUtils.isEmpty(args)) {
+            return delegate.getMessage(code, args, locale);
+        }
+
+        String message = resolve(code, locale);
+        if (message == null) {
+            throw new NoSuchMessageException(code, locale);
+        }
+
+        return message;
+    }
+
+    @Override
+    public String getMessage(MessageSourceResolvable resolvable, Locale locale) throws NoSuchMessageException {
+        return delegate.getMessage(resolvable, locale);
+    }
+
+    private String resolve(String code, Locale locale) {
+        if (code == null || locale == null) {
+            return delegate.getMessage(code, null, null, locale);
+        }
+
+        ConcurrentMap<String, Optional<String>> localeMessages = messages.get(locale);
+        if (localeMessages == null) {
+            if (messages.size() >= MAX_LOCALES) {
+                return delegate.getMessage(code, null, null, locale);
+            }
+            localeMessages = messages.computeIfAbsent(locale, key -> new ConcurrentHashMap<>());
+        }
+
+        return localeMessages.computeIfAbsent(code, key -> Optional.ofNullable(delegate.getMessage(key, null, null, locale)))
+                .orElse(null);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Публикация метрик пулов соединений HikariCP в реестре Dropwizard Metrics, откуда они попадают на эндпоинт
+ * /metrics.
+ *
+ * Для пула с именем helpdesk публикуются количества соединений helpdesk.pool.ActiveConnections, IdleConnections,
+ * TotalConnections и PendingConnections, а также распределение времени ожидания соединения helpdesk.pool.Wait,
+ * включая перцентили. Реестр задаётся до {@link InstrumentedDataSourcePostProcessor}, пока бин ещё не обёрнут.
+ *
+ * @author Alexander Kosarev
+ */
+@Component
+public class ConnectionPoolMetricsPostProcessor implements BeanPostProcessor, BeanFactoryAware {
+
+    private BeanFactory beanFactory;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource && ((HikariDataSource) bean).getMetricRegistry() == null) {
+            ((HikariDataSource) bean).setMetricRegistry(beanFactory.getBean(MetricRegistry.class));
+        }
+
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.HdrHistogram.Histogram;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * Гистограммы задержек обработчиков запросов по этапам: время контроллера без обращений к базе данных, время
+ * обращений к базе данных и время отображения шаблона без обращений к базе данных.
+ *
+ * Гистограммы обработчика создаются при первом запросе и затем находятся по методу обработчика, поэтому запись
+ * задержек не выделяет память. Гистограммы выводятся в текстовом формате Prometheus как summary
+ * {@code helpdesk_handler_latency_seconds} с метками handler и phase.
+ *
+ * @author Alexander Kosarev
+ */
+@Component
+public class HandlerLatencyHistograms {
+
+    private static final String NAME = "helpdesk_handler_latency_seconds";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final ConcurrentMap<Method, HandlerLatency> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * Запись задержек одного запроса.
+     *
+     * @param handler обработчик запроса
+     * @param controllerNanos время контроллера в наносекундах
+     * @param repositoryNanos время обращений к базе данных в наносекундах
+     * @param viewNanos время отображения шаблона в наносекундах
+     */
+    public void record(HandlerMethod handler, long controllerNanos, long repositoryNanos, long viewNanos) {
+        HandlerLatency latency = handlers.get(handler.getMethod());
+        if (latency == null) {
+            latency = handlers.computeIfAbsent(handler.getMethod(),
+                    method -> new HandlerLatency(handler.getBeanType().getSimpleName() + "." + method.getName()));
+        }
+
+        latency.controller.record(controllerNanos);
+        latency.repository.record(repositoryNanos);
+        latency.view.record(viewNanos);
+    }
+
+    /**
+     * Вывод гистограмм в текстовом формате Prometheus.
+     *
+     * @param writer получатель
+     * @throws IOException если вывод не удался
+     */
+    public void writePrometheus(Writer writer) throws IOException {
+        writer.write("# HELP " + NAME + " Handler latency by phase\n");
+        writer.write("# TYPE " + NAME + " summary\n");
+
+        Map<String, HandlerLatency> sortedHandlers = new TreeMap<>();
+        handlers.values().forEach(latency -> sortedHandlers.put(latency.name, latency));
+        for (HandlerLatency latency : sortedHandlers.values()) {
+            write(writer, latency.name, "controller", latency.controller);
+            write(writer, latency.name, "repository", latency.repository);
+            write(writer, latency.name, "view", latency.view);
+        }
+    }
+
+    private static void write(Writer writer, String handler, String phase, LatencyHistogram latencyHistogram)
+            throws IOException {
+        String labels = "handler=\"" + handler + "\",phase=\"" + phase + "\"";
+        Histogram histogram = latencyHistogram.snapshot();
+        for (double quantile : QUANTILES) {
+            writer.write(NAME + "{" + labels + ",quantile=\"" + quantile + "\"} "
+                    + histogram.getValueAtPercentile(quantile * 100) / 1e6 + "\n");
+        }
+        writer.write(NAME + "_sum{" + labels + "} " + latencyHistogram.getSumNanos() / 1e9 + "\n");
+        writer.write(NAME + "_count{" + labels + "} " + histogram.getTotalCount() + "\n");
+    }
+
+    private static final class HandlerLatency {
+
+        private final String name;
+
+        private final LatencyHistogram controller = new LatencyHistogram();
+
+        private final LatencyHistogram repository = new LatencyHistogram();
+
+        private final LatencyHistogram view = new LatencyHistogram();
+
+        HandlerLatency(String name) {
+            this.name = name;
+        }
+    }
+}
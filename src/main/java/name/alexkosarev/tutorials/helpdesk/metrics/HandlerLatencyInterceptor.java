@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Измерение задержек обработчиков заданных контроллеров по этапам.
+ *
+ * Время контроллера отсчитывается от первого вызова обработчика до возврата результата, включая асинхронную часть
+ * обработки, а время отображения — от возврата результата до завершения запроса. Время обращений к базе данных берётся
+ * из {@link JdbcStatistics} запроса и вычитается из времени того этапа, на котором эти обращения выполнялись.
+ * Задержки записываются в {@link HandlerLatencyHistograms}.
+ *
+ * @author Alexander Kosarev
+ */
+public class HandlerLatencyInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String TIMING_ATTRIBUTE = HandlerLatencyInterceptor.class.getName() + ".TIMING";
+
+    private final HandlerLatencyHistograms histograms;
+
+    private final Set<Class<?>> controllers;
+
+    public HandlerLatencyInterceptor(HandlerLatencyHistograms histograms, Class<?>... controllers) {
+        this.histograms = histograms;
+        this.controllers = new HashSet<>(Arrays.asList(controllers));
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (isMeasured(handler) && request.getAttribute(TIMING_ATTRIBUTE) == null) {
+            request.setAttribute(TIMING_ATTRIBUTE, new Timing(System.nanoTime()));
+        }
+
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+            ModelAndView modelAndView) {
+        Timing timing = (Timing) request.getAttribute(TIMING_ATTRIBUTE);
+        if (timing != null) {
+            timing.handled = System.nanoTime();
+            timing.handlerJdbcNanos = jdbcNanos();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        Timing timing = (Timing) request.getAttribute(TIMING_ATTRIBUTE);
+        if (timing == null) {
+            return;
+        }
+
+        long completed = System.nanoTime();
+        long jdbcNanos = jdbcNanos();
+        if (timing.handled == 0) {
+            // обработчик завершился исключением, и шаблон не отображался
+            timing.handled = completed;
+            timing.handlerJdbcNanos = jdbcNanos;
+        }
+
+        histograms.record((HandlerMethod) handler, timing.handled - timing.started - timing.handlerJdbcNanos,
+                jdbcNanos, completed - timing.handled - (jdbcNanos - timing.handlerJdbcNanos));
+    }
+
+    private boolean isMeasured(Object handler) {
+        return handler instanceof HandlerMethod && controllers.contains(((HandlerMethod) handler).getBeanType());
+    }
+
+    private static long jdbcNanos() {
+        JdbcStatistics statistics = JdbcStatistics.current();
+        return statistics == null ? 0 : statistics.getElapsedNanos();
+    }
+
+    private static final class Timing {
+
+        private final long started;
+
+        private long handled;
+
+        private long handlerJdbcNanos;
+
+        Timing(long started) {
+            this.started = started;
+        }
+    }
+}
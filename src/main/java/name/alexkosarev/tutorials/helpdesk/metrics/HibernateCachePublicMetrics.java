@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Статистика кеша второго уровня и кеша запросов Hibernate для эндпоинта /metrics.
+ *
+ * @author Alexander Kosarev
+ */
+@Component
+public class HibernateCachePublicMetrics implements PublicMetrics {
+
+    private final Statistics statistics;
+
+    public HibernateCachePublicMetrics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("hibernate.cache.hit", statistics.getSecondLevelCacheHitCount()));
+        metrics.add(new Metric<>("hibernate.cache.miss", statistics.getSecondLevelCacheMissCount()));
+        metrics.add(new Metric<>("hibernate.cache.put", statistics.getSecondLevelCachePutCount()));
+        metrics.add(new Metric<>("hibernate.cache.query.hit", statistics.getQueryCacheHitCount()));
+        metrics.add(new Metric<>("hibernate.cache.query.miss", statistics.getQueryCacheMissCount()));
+        metrics.add(new Metric<>("hibernate.cache.query.put", statistics.getQueryCachePutCount()));
+
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            SecondLevelCacheStatistics regionStatistics = statistics.getSecondLevelCacheStatistics(region);
+            String prefix = "hibernate.cache.region." + region;
+            metrics.add(new Metric<>(prefix + ".hit", regionStatistics.getHitCount()));
+            metrics.add(new Metric<>(prefix + ".miss", regionStatistics.getMissCount()));
+            metrics.add(new Metric<>(prefix + ".put", regionStatistics.getPutCount()));
+            metrics.add(new Metric<>(prefix + ".size", regionStatistics.getElementCountInMemory()));
+        }
+
+        return metrics;
+    }
+}
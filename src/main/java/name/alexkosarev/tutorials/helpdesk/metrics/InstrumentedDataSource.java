@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Источник данных, учитывающий выполненные SQL-запросы, время их выполнения и количество прочитанных строк в
+ * {@link JdbcStatistics} текущего потока.
+ *
+ * @author Alexander Kosarev
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    public InstrumentedDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, getTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, getTargetDataSource().getConnection(username, password));
+    }
+
+    private static <T> T proxy(Class<T> type, T target) {
+        return type.cast(Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(), new Class<?>[]{type},
+                (InvocationHandler) (proxy, method, args) -> invoke(target, method, args)));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        JdbcStatistics statistics = JdbcStatistics.current();
+        boolean execution = target instanceof Statement && method.getName().startsWith("execute");
+        long start = System.nanoTime();
+
+        Object result;
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        } finally {
+            if (execution && statistics != null) {
+                statistics.statementExecuted(System.nanoTime() - start);
+            }
+        }
+
+        if (result instanceof ResultSet && target instanceof Statement) {
+            return proxy(ResultSet.class, (ResultSet) result);
+        } else if (target instanceof ResultSet && method.getName().equals("next")) {
+            if (Boolean.TRUE.equals(result) && statistics != null) {
+                statistics.rowFetched();
+            }
+        } else if (result instanceof CallableStatement) {
+            return proxy(CallableStatement.class, (CallableStatement) result);
+        } else if (result instanceof PreparedStatement) {
+            return proxy(PreparedStatement.class, (PreparedStatement) result);
+        } else if (result instanceof Statement && target instanceof Connection) {
+            return proxy(Statement.class, (Statement) result);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import lombok.Data;
+
+/**
+ * Статистика обращений к базе данных в рамках одного HTTP-запроса.
+ *
+ * Статистика привязывается к текущему потоку на время обработки запроса фильтром {@link JdbcStatisticsFilter} и
+ * заполняется источником данных {@link InstrumentedDataSource}. Потоки, выполняющие асинхронную часть обработки
+ * запроса, продолжают заполнять статистику того же запроса.
+ *
+ * @author Alexander Kosarev
+ */
+@Data
+public class JdbcStatistics {
+
+    private static final ThreadLocal<JdbcStatistics> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Количество выполненных SQL-запросов
+     */
+    private long statements;
+
+    /**
+     * Суммарное время выполнения SQL-запросов в наносекундах
+     */
+    private long elapsedNanos;
+
+    /**
+     * Количество прочитанных строк
+     */
+    private long rows;
+
+    /**
+     * Начало сбора статистики в текущем потоке.
+     *
+     * @return статистика текущего потока
+     */
+    public static JdbcStatistics begin() {
+        JdbcStatistics statistics = new JdbcStatistics();
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    /**
+     * Продолжение сбора ранее начатой статистики в текущем потоке, например в потоке, выполняющем асинхронную часть
+     * обработки запроса.
+     *
+     * @param statistics статистика запроса или null
+     */
+    public static void resume(JdbcStatistics statistics) {
+        CURRENT.set(statistics);
+    }
+
+    /**
+     * Статистика текущего потока.
+     *
+     * @return статистика или null, если сбор статистики в текущем потоке не ведётся
+     */
+    public static JdbcStatistics current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Окончание сбора статистики в текущем потоке.
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    void statementExecuted(long nanos) {
+        statements++;
+        elapsedNanos += nanos;
+    }
+
+    void rowFetched() {
+        rows++;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import name.alexkosarev.tutorials.helpdesk.exceptions.QueryBudgetExceededException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * Сбор статистики обращений к базе данных для каждого HTTP-запроса.
+ *
+ * Количество SQL-запросов, время их выполнения в микросекундах и количество прочитанных строк записываются в
+ * гистограммы {@code histogram.jdbc.<контроллер>.<метод>.statements|micros|rows}, доступные на эндпоинте /metrics.
+ * Если количество SQL-запросов превышает {@link QueryBudget} обработчика, в журнал пишется предупреждение, а при
+ * включённом свойстве {@code helpdesk.jdbc.query-budget.enforce} выбрасывается
+ * {@link QueryBudgetExceededException}, что позволяет обнаруживать лишние запросы в интеграционных тестах.
+ *
+ * При асинхронной обработке статистика сохраняется в атрибуте запроса и записывается после завершения асинхронной
+ * части, включая обращения к базе данных из потоков {@link name.alexkosarev.tutorials.helpdesk.async.JdbcExecutor}.
+ *
+ * @author Alexander Kosarev
+ */
+@Slf4j
+@Component
+public class JdbcStatisticsFilter extends OncePerRequestFilter {
+
+    private static final String STATISTICS_ATTRIBUTE = JdbcStatisticsFilter.class.getName() + ".STATISTICS";
+
+    private final GaugeService gaugeService;
+
+    private final int defaultBudget;
+
+    private final boolean enforceBudget;
+
+    public JdbcStatisticsFilter(GaugeService gaugeService,
+            @Value("${helpdesk.jdbc.query-budget.default:20}") int defaultBudget,
+            @Value("${helpdesk.jdbc.query-budget.enforce:false}") boolean enforceBudget) {
+        this.gaugeService = gaugeService;
+        this.defaultBudget = defaultBudget;
+        this.enforceBudget = enforceBudget;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        JdbcStatistics statistics = (JdbcStatistics) request.getAttribute(STATISTICS_ATTRIBUTE);
+        if (statistics == null) {
+            statistics = JdbcStatistics.begin();
+            request.setAttribute(STATISTICS_ATTRIBUTE, statistics);
+        } else {
+            JdbcStatistics.resume(statistics);
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            JdbcStatistics.end();
+        }
+
+        if (isAsyncStarted(request)) {
+            return;
+        }
+
+        Object handler = request.getAttribute(JdbcStatisticsInterceptor.HANDLER_ATTRIBUTE);
+        if (handler instanceof HandlerMethod) {
+            record((HandlerMethod) handler, statistics);
+        }
+    }
+
+    private void record(HandlerMethod handler, JdbcStatistics statistics) throws QueryBudgetExceededException {
+        String name = handler.getBeanType().getSimpleName() + "." + handler.getMethod().getName();
+        gaugeService.submit("histogram.jdbc." + name + ".statements", statistics.getStatements());
+        gaugeService.submit("histogram.jdbc." + name + ".micros",
+                TimeUnit.NANOSECONDS.toMicros(statistics.getElapsedNanos()));
+        gaugeService.submit("histogram.jdbc." + name + ".rows", statistics.getRows());
+
+        QueryBudget queryBudget = handler.getMethodAnnotation(QueryBudget.class);
+        int budget = queryBudget == null ? defaultBudget : queryBudget.value();
+        if (statistics.getStatements() > budget) {
+            String message = String.format("%s executed %d SQL statements, budget is %d", name,
+                    statistics.getStatements(), budget);
+            if (enforceBudget) {
+                throw new QueryBudgetExceededException(message);
+            }
+            log.warn(message);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Сохранение обработчика запроса в атрибуте запроса для {@link JdbcStatisticsFilter}.
+ *
+ * @author Alexander Kosarev
+ */
+public class JdbcStatisticsInterceptor extends HandlerInterceptorAdapter {
+
+    /**
+     * Имя атрибута запроса с обработчиком
+     */
+    public static final String HANDLER_ATTRIBUTE = JdbcStatisticsInterceptor.class.getName() + ".HANDLER";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            request.setAttribute(HANDLER_ATTRIBUTE, handler);
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Гистограмма задержек в микросекундах с записью без блокировок и выделения памяти.
+ *
+ * Значения записываются в {@link Recorder}, а при чтении накопленные с прошлого чтения значения переносятся в общую
+ * гистограмму. Значения больше минуты записываются как минута.
+ *
+ * @author Alexander Kosarev
+ */
+class LatencyHistogram {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Recorder recorder = new Recorder(HIGHEST_MICROS, 2);
+
+    private final Histogram accumulated = new Histogram(HIGHEST_MICROS, 2);
+
+    private final LongAdder sumNanos = new LongAdder();
+
+    private Histogram interval;
+
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(value), HIGHEST_MICROS));
+        sumNanos.add(value);
+    }
+
+    /**
+     * Перенос записанных значений в общую гистограмму.
+     *
+     * @return общая гистограмма, которую можно читать до следующего вызова
+     */
+    synchronized Histogram snapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        accumulated.add(interval);
+        return accumulated;
+    }
+
+    long getSumNanos() {
+        return sumNanos.sum();
+    }
+}
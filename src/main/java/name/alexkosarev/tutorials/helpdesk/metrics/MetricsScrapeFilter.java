@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Доступ сборщика метрик к защищённым эндпоинтам метрик.
+ *
+ * Эндпоинты метрик /metrics и /prometheus остаются защищёнными и отвечают 401 Unauthorized запросам без роли из свойства
+ * management.security.roles. Запросу к эндпоинту метрик с заголовком {@code Authorization: Bearer <токен>}, где токен
+ * совпадает со свойством helpdesk.metrics.scrape-token, фильтр выдаёт эти роли. Если токен не задан, доступ не
+ * выдаётся никому.
+ *
+ * @author Alexander Kosarev
+ */
+@Component
+public class MetricsScrapeFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private static final Set<String> PATHS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("/metrics", "/prometheus")));
+
+    private final byte[] token;
+
+    private final Set<String> roles;
+
+    public MetricsScrapeFilter(@Value("${helpdesk.metrics.scrape-token:}") String token,
+            @Value("${management.security.roles:ACTUATOR}") String[] roles) {
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.roles = new HashSet<>(Arrays.asList(roles));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return token.length == 0 || PATHS.stream().noneMatch(scrapePath -> path.equals(scrapePath)
+                || path.startsWith(scrapePath + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)
+                || !MessageDigest.isEqual(token, authorization.substring(BEARER_PREFIX.length())
+                        .getBytes(StandardCharsets.UTF_8))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        filterChain.doFilter(new HttpServletRequestWrapper(request) {
+            @Override
+            public boolean isUserInRole(String role) {
+                return roles.contains(role) || super.isUserInRole(role);
+            }
+        }, response);
+    }
+}
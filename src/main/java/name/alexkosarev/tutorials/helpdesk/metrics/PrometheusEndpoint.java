@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import org.springframework.boot.actuate.endpoint.mvc.AbstractMvcEndpoint;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Эндпоинт /prometheus с задержками обработчиков из {@link HandlerLatencyHistograms} в текстовом формате Prometheus.
+ *
+ * Эндпоинт защищён так же, как /metrics, сборщик метрик получает доступ через {@link MetricsScrapeFilter}.
+ *
+ * @author Alexander Kosarev
+ */
+@Component
+@ConfigurationProperties(prefix = "endpoints.prometheus")
+public class PrometheusEndpoint extends AbstractMvcEndpoint {
+
+    /**
+     * Тип содержимого текстового формата Prometheus
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HandlerLatencyHistograms histograms;
+
+    public PrometheusEndpoint(HandlerLatencyHistograms histograms) {
+        super("/prometheus", true);
+        this.histograms = histograms;
+    }
+
+    @GetMapping(produces = CONTENT_TYPE)
+    @ResponseBody
+    public String metrics() throws IOException {
+        StringWriter writer = new StringWriter();
+        histograms.writePrometheus(writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import name.alexkosarev.tutorials.helpdesk.events.TicketEventBus;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Количество подписчиков {@link TicketEventBus} и количество подписок, закрытых из-за переполнения буфера или
+ * медленной отправки, для эндпоинта /metrics.
+ *
+ * @author Alexander Kosarev
+ */
+@Component
+public class TicketEventBusPublicMetrics implements PublicMetrics {
+
+    private final TicketEventBus eventBus;
+
+    public TicketEventBusPublicMetrics(TicketEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("ticket-events.subscribers", eventBus.getSubscriberCount()));
+        metrics.add(new Metric<>("ticket-events.overflows", eventBus.getOverflowCount()));
+        metrics.add(new Metric<>("ticket-events.slow-subscribers", eventBus.getSlowSubscriberCount()));
+
+        return metrics;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import name.alexkosarev.tutorials.helpdesk.pagecache.TicketPageCache;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Статистика кеша отрисованных страниц списка заявок для эндпоинта /metrics.
+ *
+ * @author Alexander Kosarev
+ */
+@Component
+public class TicketPageCachePublicMetrics implements PublicMetrics {
+
+    private final TicketPageCache cache;
+
+    public TicketPageCachePublicMetrics(TicketPageCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long hitCount = cache.getHitCount();
+        long requestCount = hitCount + cache.getMissCount();
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("tickets.page-cache.hit", hitCount));
+        metrics.add(new Metric<>("tickets.page-cache.miss", cache.getMissCount()));
+        metrics.add(new Metric<>("tickets.page-cache.hit-ratio", requestCount == 0 ? 0.0 : (double) hitCount / requestCount));
+        metrics.add(new Metric<>("tickets.page-cache.put", cache.getPutCount()));
+        metrics.add(new Metric<>("tickets.page-cache.eviction", cache.getEvictionCount()));
+        metrics.add(new Metric<>("tickets.page-cache.size", cache.getPageCount()));
+        metrics.add(new Metric<>("tickets.page-cache.bytes", cache.getSize()));
+
+        return metrics;
+    }
+}
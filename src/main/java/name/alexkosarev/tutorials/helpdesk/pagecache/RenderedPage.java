@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.pagecache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Отрисованная страница, сохранённая в {@link TicketPageCache}.
+ *
+ * @author Alexander Kosarev
+ */
+@Data
+@AllArgsConstructor
+public class RenderedPage {
+
+    /**
+     * Тип содержимого ответа
+     */
+    private String contentType;
+
+    /**
+     * Заголовки ответа, кроме Content-Type, Content-Length и Set-Cookie
+     */
+    private HttpHeaders headers;
+
+    /**
+     * Тело ответа
+     */
+    private byte[] body;
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.pagecache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Кеш отрисованных страниц списка заявок.
+ *
+ * Объём кеша ограничен суммарным размером тел страниц, при превышении вытесняются давно не запрошенные страницы.
+ * Кеш полностью очищается при любом изменении заявок. Каждая очистка увеличивает поколение кеша, и страница,
+ * отрисованная до очистки, не сохраняется, поэтому в кеш не может попасть страница с устаревшими данными.
+ *
+ * @author Alexander Kosarev
+ */
+@Component
+public class TicketPageCache {
+
+    private final long maxSize;
+
+    private final Map<String, RenderedPage> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong putCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private long size;
+
+    public TicketPageCache(@Value("${helpdesk.tickets.page-cache.max-size:10485760}") long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Текущее поколение кеша, которое необходимо получить до отрисовки страницы.
+     *
+     * @return поколение кеша
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Получение страницы.
+     *
+     * @param key ключ страницы
+     * @return страница или null, если страница отсутствует в кеше
+     */
+    public RenderedPage get(String key) {
+        RenderedPage page;
+        synchronized (pages) {
+            page = pages.get(key);
+        }
+
+        (page == null ? missCount : hitCount).incrementAndGet();
+        return page;
+    }
+
+    /**
+     * Сохранение страницы, если кеш не очищался с начала её отрисовки.
+     *
+     * @param key ключ страницы
+     * @param generation поколение кеша, полученное до отрисовки страницы
+     * @param page страница
+     */
+    public void put(String key, long generation, RenderedPage page) {
+        long pageSize = page.getBody().length;
+        if (pageSize > maxSize) {
+            return;
+        }
+
+        synchronized (pages) {
+            if (generation != this.generation.get()) {
+                return;
+            }
+
+            RenderedPage previous = pages.put(key, page);
+            size += pageSize - (previous == null ? 0 : previous.getBody().length);
+            for (Iterator<RenderedPage> iterator = pages.values().iterator(); size > maxSize && iterator.hasNext();) {
+                size -= iterator.next().getBody().length;
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+
+        putCount.incrementAndGet();
+    }
+
+    /**
+     * Очистка кеша.
+     */
+    public void invalidate() {
+        synchronized (pages) {
+            generation.incrementAndGet();
+            pages.clear();
+            size = 0;
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getPutCount() {
+        return putCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Количество страниц в кеше.
+     *
+     * @return количество страниц
+     */
+    public int getPageCount() {
+        synchronized (pages) {
+            return pages.size();
+        }
+    }
+
+    /**
+     * Суммарный размер тел страниц в кеше.
+     *
+     * @return размер в байтах
+     */
+    public long getSize() {
+        synchronized (pages) {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.pagecache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.LocaleResolver;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Выдача страниц списка заявок {@code /tickets?page=&size=&sort=} из {@link TicketPageCache}.
+ *
+ * Страница одинакова для всех пользователей с одной локалью, поэтому ключом служат локаль и параметры пейджинации.
+ * Запросы с другими параметрами, в том числе со сменой локали и пейджинацией по курсору, обрабатываются без кеша.
+ * Для страницы из кеша условный запрос по ETag обрабатывается так же, как контроллером. При асинхронной обработке
+ * страница сохраняется после завершения асинхронной части с поколением кеша, полученным до её начала, и с
+ * заголовками, выставленными в асинхронной части, даже если контейнер передал при диспетчеризации другой ответ.
+ *
+ * @author Alexander Kosarev
+ */
+@Component
+public class TicketPageCacheFilter extends OncePerRequestFilter {
+
+    private static final String PATH = "/tickets";
+
+    private static final String KEY_ATTRIBUTE = TicketPageCacheFilter.class.getName() + ".KEY";
+
+    private static final String GENERATION_ATTRIBUTE = TicketPageCacheFilter.class.getName() + ".GENERATION";
+
+    private static final String RESPONSE_ATTRIBUTE = TicketPageCacheFilter.class.getName() + ".RESPONSE";
+
+    private static final Set<String> KEY_PARAMETERS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("page", "size", "sort")));
+
+    private static final Set<String> EXCLUDED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        EXCLUDED_HEADERS.addAll(Arrays.asList(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.SET_COOKIE));
+    }
+
+    private final TicketPageCache cache;
+
+    private final LocaleResolver localeResolver;
+
+    private final boolean enabled;
+
+    public TicketPageCacheFilter(TicketPageCache cache, LocaleResolver localeResolver,
+            @Value("${helpdesk.tickets.page-cache.enabled:true}") boolean enabled) {
+        this.cache = cache;
+        this.localeResolver = localeResolver;
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String key;
+        long generation;
+        if (isAsyncDispatch(request)) {
+            key = (String) request.getAttribute(KEY_ATTRIBUTE);
+            generation = key == null ? 0 : (Long) request.getAttribute(GENERATION_ATTRIBUTE);
+        } else {
+            key = enabled ? key(request) : null;
+            if (key != null) {
+                RenderedPage page = cache.get(key);
+                if (page != null) {
+                    write(page, request, response);
+                    return;
+                }
+            }
+            generation = cache.getGeneration();
+        }
+
+        if (key == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper responseWrapper = WebUtils.getNativeResponse(response,
+                ContentCachingResponseWrapper.class);
+        if (responseWrapper == null) {
+            responseWrapper = new ContentCachingResponseWrapper(response);
+        }
+        filterChain.doFilter(request, responseWrapper);
+
+        if (isAsyncStarted(request)) {
+            request.setAttribute(KEY_ATTRIBUTE, key);
+            request.setAttribute(GENERATION_ATTRIBUTE, generation);
+            request.setAttribute(RESPONSE_ATTRIBUTE, responseWrapper);
+            return;
+        }
+
+        if (responseWrapper.getStatus() == HttpServletResponse.SC_OK) {
+            HttpHeaders headers = new HttpHeaders();
+            HttpServletResponse asyncStartResponse = (HttpServletResponse) request.getAttribute(RESPONSE_ATTRIBUTE);
+            if (asyncStartResponse != null && asyncStartResponse != responseWrapper) {
+                copyHeaders(asyncStartResponse, headers);
+            }
+            copyHeaders(responseWrapper, headers);
+            cache.put(key, generation, new RenderedPage(responseWrapper.getContentType(), headers,
+                    responseWrapper.getContentAsByteArray()));
+        }
+        responseWrapper.copyBodyToResponse();
+    }
+
+    private static void copyHeaders(HttpServletResponse response, HttpHeaders headers) {
+        for (String name : response.getHeaderNames()) {
+            if (!EXCLUDED_HEADERS.contains(name)) {
+                headers.put(name, new ArrayList<>(response.getHeaders(name)));
+            }
+        }
+    }
+
+    private String key(HttpServletRequest request) {
+        if (!HttpMethod.GET.matches(request.getMethod())
+                || !PATH.equals(request.getRequestURI().substring(request.getContextPath().length()))) {
+            return null;
+        }
+
+        Map<String, String[]> parameters = new TreeMap<>(request.getParameterMap());
+        if (!KEY_PARAMETERS.containsAll(parameters.keySet())) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder(localeResolver.resolveLocale(request).toLanguageTag());
+        parameters.forEach((name, values) -> key.append('&').append(name).append('=').append(Arrays.toString(values)));
+        return key.toString();
+    }
+
+    private static void write(RenderedPage page, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        page.getHeaders().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        if (new ServletWebRequest(request, response).checkNotModified(page.getHeaders().getETag())) {
+            return;
+        }
+
+        response.setContentType(page.getContentType());
+        response.setContentLength(page.getBody().length);
+        response.getOutputStream().write(page.getBody());
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.pagination;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Страница списка, полученная по курсору.
+ *
+ * @param <T> тип элементов списка
+ * @author Alexander Kosarev
+ */
+@Data
+@AllArgsConstructor
+public class CursorSlice<T> {
+
+    /**
+     * Элементы страницы
+     */
+    private List<T> content;
+
+    /**
+     * Запрошенный размер страницы
+     */
+    private int size;
+
+    /**
+     * Курсор предыдущей страницы или null, если предыдущей страницы нет
+     */
+    private String previousCursor;
+
+    /**
+     * Курсор следующей страницы или null, если следующей страницы нет
+     */
+    private String nextCursor;
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.pagination;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Компактное представление страницы списка без подсчёта общего количества элементов.
+ *
+ * @param <T> тип элементов списка
+ * @author Alexander Kosarev
+ */
+@Data
+@AllArgsConstructor
+public class SliceView<T> {
+
+    /**
+     * Элементы страницы
+     */
+    private List<T> content;
+
+    /**
+     * Номер страницы, начиная с нуля
+     */
+    private int number;
+
+    /**
+     * Запрошенный размер страницы
+     */
+    private int size;
+
+    /**
+     * Признак наличия следующей страницы
+     */
+    private boolean hasNext;
+
+    public static <T> SliceView<T> of(Slice<T> slice) {
+        return new SliceView<>(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.exceptions.InvalidCursorException;
+
+/**
+ * Курсор для постраничного просмотра списка заявок без использования OFFSET.
+ *
+ * Список заявок упорядочен по убыванию даты создания и идентификатора, курсор хранит ключ заявки, от которой
+ * продолжается просмотр, и направление просмотра. Пользователю курсор передаётся в виде непрозрачной строки.
+ *
+ * @author Alexander Kosarev
+ */
+@Data
+@AllArgsConstructor
+public class TicketCursor {
+
+    private static final String FORWARD = "n";
+
+    private static final String BACKWARD = "p";
+
+    /**
+     * Просмотр в обратном направлении, к более новым заявкам
+     */
+    private boolean backward;
+
+    /**
+     * Дата создания заявки, от которой продолжается просмотр
+     */
+    private Date dateCreated;
+
+    /**
+     * Идентификатор заявки, от которой продолжается просмотр
+     */
+    private int id;
+
+    /**
+     * Курсор на заявки, созданные раньше указанной.
+     *
+     * @param ticket последняя заявка на текущей странице
+     * @return курсор следующей страницы
+     */
+    public static TicketCursor after(Ticket ticket) {
+        return new TicketCursor(false, ticket.getDateCreated(), ticket.getId());
+    }
+
+    /**
+     * Курсор на заявки, созданные позже указанной.
+     *
+     * @param ticket первая заявка на текущей странице
+     * @return курсор предыдущей страницы
+     */
+    public static TicketCursor before(Ticket ticket) {
+        return new TicketCursor(true, ticket.getDateCreated(), ticket.getId());
+    }
+
+    /**
+     * Разбор курсора, полученного от пользователя.
+     *
+     * @param value строковое представление курсора
+     * @return курсор
+     * @throws InvalidCursorException если строка не является корректным курсором
+     */
+    public static TicketCursor decode(String value) throws InvalidCursorException {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.US_ASCII).split(":");
+            if (parts.length != 4 || !(FORWARD.equals(parts[0]) || BACKWARD.equals(parts[0]))) {
+                throw new InvalidCursorException("error.cursor.invalid");
+            }
+
+            Timestamp dateCreated = new Timestamp(Long.parseLong(parts[1]));
+            dateCreated.setNanos(Integer.parseInt(parts[2]));
+
+            return new TicketCursor(BACKWARD.equals(parts[0]), dateCreated, Integer.parseInt(parts[3]));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidCursorException("error.cursor.invalid", ex);
+        }
+    }
+
+    /**
+     * Строковое представление курсора для передачи пользователю.
+     *
+     * @return строковое представление курсора
+     */
+    public String encode() {
+        int nanos = dateCreated instanceof Timestamp
+                ? ((Timestamp) dateCreated).getNanos()
+                : (int) Math.floorMod(dateCreated.getTime(), 1000L) * 1000000;
+        String value = (backward ? BACKWARD : FORWARD) + ":" + dateCreated.getTime() + ":" + nanos + ":" + id;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.ratelimit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import name.alexkosarev.tutorials.helpdesk.HttpRequests;
+import name.alexkosarev.tutorials.helpdesk.exceptions.TooManyRequestsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Ограничение частоты изменяющих запросов.
+ *
+ * Каждый изменяющий запрос получает маркер из корзины клиента, затем из корзины IP-адреса клиента и из общей корзины
+ * всех изменяющих запросов. Клиенту, чей запрос допущен, выдаётся cookie с идентификатором, подписанным HMAC, и
+ * клиенты за одним адресом с таким cookie получают отдельные корзины, а клиенты без cookie делят одну корзину адреса.
+ * Cookie только разделяет клиентов за одним адресом: все они расходуют маркеры корзины адреса, поэтому, меняя cookie,
+ * клиент не получает больше запросов, чем допускает адрес. Cookie без верной подписи не учитывается, а количество
+ * корзин клиентов одного адреса ограничено: клиенты сверх ограничения делят корзину клиентов без cookie. Количество
+ * адресов также ограничено: новые адреса сверх ограничения делят одну общую корзину, пока наполнившиеся корзины не
+ * будут удалены.
+ *
+ * Общая корзина сбрасывает нагрузку, если изменяющих запросов слишком много в целом. Запросы на чтение не
+ * ограничиваются и не расходуют маркеры, поэтому поток изменений не вытесняет чтение. Если маркера нет, выбрасывается
+ * {@link TooManyRequestsException}, а в заголовке Retry-After передаётся время в секундах до появления маркера.
+ *
+ * @author Alexander Kosarev
+ */
+@Component
+public class RateLimitInterceptor extends HandlerInterceptorAdapter {
+
+    /**
+     * Имя cookie с подписанным идентификатором клиента
+     */
+    public static final String CLIENT_COOKIE = "helpdesk-client";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final String OVERFLOW_ADDRESS = "overflow";
+
+    private static final String ANONYMOUS_CLIENT = "";
+
+    private final ConcurrentMap<String, AddressBuckets> addressBuckets = new ConcurrentHashMap<>();
+
+    private final TokenBucket globalBucket;
+
+    private final SecretKeySpec cookieKey;
+
+    private final int capacity;
+
+    private final double rate;
+
+    private final int addressCapacity;
+
+    private final double addressRate;
+
+    private final int maxClients;
+
+    private final int maxClientsPerAddress;
+
+    private final Meter clientRejections;
+
+    private final Meter shedRejections;
+
+    public RateLimitInterceptor(MetricRegistry metricRegistry,
+            @Value("${helpdesk.rate-limit.capacity:20}") int capacity,
+            @Value("${helpdesk.rate-limit.rate:5}") double rate,
+            @Value("${helpdesk.rate-limit.address-capacity:100}") int addressCapacity,
+            @Value("${helpdesk.rate-limit.address-rate:25}") double addressRate,
+            @Value("${helpdesk.rate-limit.global-capacity:200}") int globalCapacity,
+            @Value("${helpdesk.rate-limit.global-rate:100}") double globalRate,
+            @Value("${helpdesk.rate-limit.max-clients:10000}") int maxClients,
+            @Value("${helpdesk.rate-limit.max-clients-per-address:16}") int maxClientsPerAddress,
+            @Value("${helpdesk.rate-limit.cookie-secret:}") String cookieSecret) {
+        this.globalBucket = new TokenBucket(globalCapacity, globalRate, System.nanoTime());
+        this.cookieKey = new SecretKeySpec(cookieSecret.isEmpty() ? randomSecret()
+                : cookieSecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.capacity = capacity;
+        this.rate = rate;
+        this.addressCapacity = addressCapacity;
+        this.addressRate = addressRate;
+        this.maxClients = maxClients;
+        this.maxClientsPerAddress = maxClientsPerAddress;
+        this.clientRejections = metricRegistry.meter("helpdesk.rate-limit.client-rejections");
+        this.shedRejections = metricRegistry.meter("helpdesk.rate-limit.shed-rejections");
+        metricRegistry.register("helpdesk.rate-limit.clients", (Gauge<Integer>) addressBuckets::size);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws TooManyRequestsException {
+        if (!(handler instanceof HandlerMethod) || !HttpRequests.isModifying(request)) {
+            return true;
+        }
+
+        String clientId = clientId(request);
+        long now = System.nanoTime();
+        AddressBuckets buckets = addressBuckets(request.getRemoteAddr(), now);
+        long wait = buckets.client(clientId, now).tryAcquire(now);
+        if (wait <= 0) {
+            wait = buckets.address.tryAcquire(now);
+        }
+        if (wait > 0) {
+            clientRejections.mark();
+            throw reject(response, wait);
+        }
+
+        wait = globalBucket.tryAcquire(now);
+        if (wait > 0) {
+            shedRejections.mark();
+            throw reject(response, wait);
+        }
+
+        if (clientId == null) {
+            Cookie cookie = new Cookie(CLIENT_COOKIE, sign(UUID.randomUUID().toString()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+
+        return true;
+    }
+
+    /**
+     * Удаление корзин клиентов, которые успели наполниться.
+     */
+    @Scheduled(fixedDelayString = "${helpdesk.rate-limit.eviction-interval:60000}")
+    public void evict() {
+        long now = System.nanoTime();
+        addressBuckets.values().removeIf(buckets -> buckets.evict(now));
+    }
+
+    /**
+     * Подписанное значение cookie клиента.
+     *
+     * @param clientId идентификатор клиента
+     * @return значение cookie
+     */
+    String sign(String clientId) {
+        return clientId + "." + hmac(clientId);
+    }
+
+    private String clientId(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, CLIENT_COOKIE);
+        if (cookie == null) {
+            return null;
+        }
+
+        String value = cookie.getValue();
+        int separator = value.lastIndexOf('.');
+        if (separator <= 0) {
+            return null;
+        }
+
+        String clientId = value.substring(0, separator);
+        boolean valid = MessageDigest.isEqual(hmac(clientId).getBytes(StandardCharsets.US_ASCII),
+                value.substring(separator + 1).getBytes(StandardCharsets.US_ASCII));
+        return valid ? clientId : null;
+    }
+
+    private AddressBuckets addressBuckets(String address, long now) {
+        AddressBuckets buckets = addressBuckets.get(address);
+        if (buckets != null) {
+            return buckets;
+        }
+
+        if (addressBuckets.size() >= maxClients) {
+            address = OVERFLOW_ADDRESS;
+        }
+        return addressBuckets.computeIfAbsent(address, key -> new AddressBuckets(now));
+    }
+
+    private String hmac(String value) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(cookieKey);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    private static TooManyRequestsException reject(HttpServletResponse response, long wait) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (long) Math.ceil(wait / 1e9))));
+        return new TooManyRequestsException("Too many requests");
+    }
+
+    /**
+     * Корзина адреса и корзины клиентов за этим адресом.
+     */
+    private class AddressBuckets {
+
+        private final TokenBucket address;
+
+        private final ConcurrentMap<String, TokenBucket> clients = new ConcurrentHashMap<>();
+
+        AddressBuckets(long now) {
+            this.address = new TokenBucket(addressCapacity, addressRate, now);
+        }
+
+        TokenBucket client(String clientId, long now) {
+            String client = clientId == null ? ANONYMOUS_CLIENT : clientId;
+            TokenBucket bucket = clients.get(client);
+            if (bucket != null) {
+                return bucket;
+            }
+
+            if (clients.size() >= maxClientsPerAddress) {
+                client = ANONYMOUS_CLIENT;
+            }
+            return clients.computeIfAbsent(client, key -> new TokenBucket(capacity, rate, now));
+        }
+
+        /**
+         * Удаление наполнившихся корзин клиентов.
+         *
+         * @return true, если наполнились все корзины адреса
+         */
+        boolean evict(long now) {
+            clients.values().removeIf(bucket -> bucket.isFull(now));
+            return clients.isEmpty() && address.isFull(now);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Корзина маркеров без блокировок.
+ *
+ * Вместо количества маркеров хранится расчётное время, к которому корзина снова станет полной: каждый запрос сдвигает
+ * его на интервал пополнения одного маркера, и запрос допускается, если это время опережает текущее не больше, чем на
+ * ёмкость корзины. Состояние умещается в одно значение long и изменяется операцией compare-and-set.
+ *
+ * @author Alexander Kosarev
+ */
+public class TokenBucket {
+
+    private final long interval;
+
+    private final long capacity;
+
+    private final AtomicLong fullAt;
+
+    /**
+     * @param capacity количество запросов, допускаемых подряд
+     * @param permitsPerSecond скорость пополнения корзины
+     * @param now текущее время в наносекундах
+     */
+    public TokenBucket(int capacity, double permitsPerSecond, long now) {
+        this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.capacity = capacity * interval;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Получение маркера.
+     *
+     * @param now текущее время в наносекундах
+     * @return 0, если маркер получен, или время в наносекундах до появления маркера
+     */
+    public long tryAcquire(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + interval;
+            long wait = next - capacity - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Проверка, что корзина полна и её можно удалить без потери состояния.
+     *
+     * @param now текущее время в наносекундах
+     * @return true, если все маркеры восстановлены
+     */
+    public boolean isFull(long now) {
+        return fullAt.get() - now <= 0;
+    }
+}
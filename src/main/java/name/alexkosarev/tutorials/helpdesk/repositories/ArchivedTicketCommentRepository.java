@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.repositories;
+
+import name.alexkosarev.tutorials.helpdesk.entities.ArchivedTicketComment;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Репозиторий комментариев архивных заявок.
+ *
+ * @author Alexander Kosarev
+ */
+public interface ArchivedTicketCommentRepository extends Repository<ArchivedTicketComment, Integer>,
+        ArchivedTicketCommentRepositoryCustom {
+
+    /**
+     * Страница комментариев архивной заявки без подсчёта общего количества.
+     *
+     * @param ticketId идентификатор архивной заявки
+     * @param pageable параметры пейджинации и сортировки
+     * @return страница комментариев
+     */
+    @Query("select new name.alexkosarev.tutorials.helpdesk.projections.TicketCommentView(c.id, c.comment, c.dateCreated) "
+            + "from ArchivedTicketComment c where c.ticketId = :ticketId")
+    Slice<TicketCommentView> findByTicketId(@Param("ticketId") int ticketId, Pageable pageable);
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.repositories;
+
+import java.util.Collection;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import name.alexkosarev.tutorials.helpdesk.entities.ArchivedTicketComment;
+import org.hibernate.Session;
+
+/**
+ * Копирование комментариев заявок в архив запросом SQL.
+ *
+ * Как и в {@link ArchivedTicketRepositoryImpl}, запрос объявляет изменяемой только сущность
+ * {@link ArchivedTicketComment}, чтобы не очищать остальные кеши.
+ *
+ * @author Alexander Kosarev
+ */
+public class ArchivedTicketCommentRepositoryImpl implements ArchivedTicketCommentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int copyFromTicketComments(Collection<Integer> ids) {
+        return entityManager.unwrap(Session.class)
+                .createSQLQuery("insert into ticket_comment_archive (id, comment, date_created, ticket_id) "
+                        + "select id, comment, date_created, ticket_id from ticket_comment where ticket_id in :ids")
+                .addSynchronizedEntityClass(ArchivedTicketComment.class)
+                .setParameterList("ids", ids)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.repositories;
+
+import name.alexkosarev.tutorials.helpdesk.entities.ArchivedTicket;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Репозиторий архивных заявок.
+ *
+ * Архивные заявки только читаются, записываются они переносом строк из рабочих таблиц.
+ *
+ * @author Alexander Kosarev
+ */
+public interface ArchivedTicketRepository extends Repository<ArchivedTicket, Integer>,
+        ArchivedTicketRepositoryCustom {
+
+    /**
+     * Получение архивной заявки.
+     *
+     * @param id идентификатор заявки
+     * @return архивная заявка или null, если заявка с таким идентификатором не архивировалась
+     */
+    ArchivedTicket findOne(Integer id);
+
+    /**
+     * Поиск архивных заявок по подстроке проблемы или описания проблемы без учёта регистра.
+     *
+     * @param query подстрока
+     * @param pageable параметры пейджинации
+     * @return страница архивных заявок в порядке убывания даты создания
+     */
+    @Query("select t from ArchivedTicket t where lower(t.issue) like lower(concat('%', :query, '%')) "
+            + "or lower(t.issueDetails) like lower(concat('%', :query, '%')) order by t.dateCreated desc, t.id desc")
+    Slice<ArchivedTicket> search(@Param("query") String query, Pageable pageable);
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.repositories;
+
+import java.util.Collection;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import name.alexkosarev.tutorials.helpdesk.entities.ArchivedTicket;
+import org.hibernate.Session;
+
+/**
+ * Копирование заявок в архив запросом SQL.
+ *
+ * Запрос SQL, изменяющий данные, по умолчанию делает недействительными все регионы кеша второго уровня и кеша
+ * запросов, поскольку Hibernate не знает, какие таблицы он изменяет. Запрос объявляет единственную изменяемую
+ * сущность {@link ArchivedTicket}, поэтому очищаются только её кеши.
+ *
+ * @author Alexander Kosarev
+ */
+public class ArchivedTicketRepositoryImpl implements ArchivedTicketRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int copyFromTickets(Collection<Integer> ids) {
+        return entityManager.unwrap(Session.class)
+                .createSQLQuery("insert into ticket_archive (id, issue, issue_details, date_created, date_modified, comment_count, "
+                        + "last_activity, date_archived) select id, issue, issue_details, date_created, date_modified, comment_count, "
+                        + "last_activity, current_timestamp from ticket where id in :ids")
+                .addSynchronizedEntityClass(ArchivedTicket.class)
+                .setParameterList("ids", ids)
+                .executeUpdate();
+    }
+}
@@ -15,11 +15,22 @@
  */
 package name.alexkosarev.tutorials.helpdesk.repositories;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
 import name.alexkosarev.tutorials.helpdesk.entities.TicketComment;
-import org.springframework.data.domain.Page;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentExport;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentText;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentView;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
 /**
  *
@@ -27,5 +38,55 @@ import org.springframework.data.repository.PagingAndSortingRepository;
  */
 public interface TicketCommentRepository extends PagingAndSortingRepository<TicketComment, Integer> {
 
-    Page<TicketComment> findByTicket(Ticket ticket, Pageable pageable);
-}
+    /**
+     * Страница комментариев к заявке без подсчёта общего количества.
+     *
+     * Выбираются только поля комментариев, заявка не загружается повторно.
+     *
+     * Результаты запроса кешируются в регионе ticketComments и инвалидируются Hibernate при любом изменении
+     * комментариев.
+     *
+     * @param ticket заявка
+     * @param pageable параметры пейджинации и сортировки
+     * @return страница комментариев
+     */
+    @QueryHints({
+        @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+        @QueryHint(name = "org.hibernate.cacheRegion", value = "ticketComments")
+    })
+    @Query("select new name.alexkosarev.tutorials.helpdesk.projections.TicketCommentView(c.id, c.comment, c.dateCreated) "
+            + "from TicketComment c where c.ticket = :ticket")
+    Slice<TicketCommentView> findByTicket(@Param("ticket") Ticket ticket, Pageable pageable);
+
+    /**
+     * Тексты комментариев к заявкам для поискового индекса.
+     *
+     * @param tickets заявки
+     * @return тексты комментариев с идентификаторами заявок
+     */
+    @Query("select new name.alexkosarev.tutorials.helpdesk.projections.TicketCommentText(c.ticket.id, c.comment) "
+            + "from TicketComment c where c.ticket in :tickets")
+    List<TicketCommentText> findTextsByTicketIn(@Param("tickets") Collection<Ticket> tickets);
+
+    /**
+     * Удаление всех комментариев заявок одним запросом.
+     *
+     * @param ids идентификаторы заявок
+     * @return количество удалённых комментариев
+     */
+    @Modifying
+    @Query("delete from TicketComment c where c.ticket.id in :ids")
+    int deleteByTicketIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Все комментарии в порядке возрастания идентификатора заявки и комментария, читаемые курсором.
+     *
+     * Поток должен использоваться внутри транзакции и закрываться после использования.
+     *
+     * @return поток комментариев
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select new name.alexkosarev.tutorials.helpdesk.projections.TicketCommentExport(c.ticket.id, c.id, c.comment, c.dateCreated) "
+            + "from TicketComment c order by c.ticket.id, c.id")
+    Stream<TicketCommentExport> streamAllForExport();
+}
\ No newline at end of file
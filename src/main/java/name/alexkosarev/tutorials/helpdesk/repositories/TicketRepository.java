@@ -15,8 +15,28 @@
  */
 package name.alexkosarev.tutorials.helpdesk.repositories;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import javax.persistence.TemporalType;
 import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.pagination.CursorSlice;
+import name.alexkosarev.tutorials.helpdesk.pagination.TicketCursor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.jpa.repository.Temporal;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
 /**
  * Репозиторий заявок.
@@ -24,4 +44,159 @@ import org.springframework.data.repository.PagingAndSortingRepository;
  * @author Alexander Kosarev
  */
 public interface TicketRepository extends PagingAndSortingRepository<Ticket, Integer> {
+
+    /**
+     * Страница заявок без подсчёта общего количества.
+     *
+     * Для определения наличия следующей страницы запрашивается на одну заявку больше размера страницы.
+     *
+     * @param pageable параметры пейджинации и сортировки
+     * @return страница заявок
+     */
+    Slice<Ticket> findAllBy(Pageable pageable);
+
+    /**
+     * Первые заявки в порядке убывания даты создания.
+     *
+     * @param pageable ограничение количества заявок
+     * @return список заявок
+     */
+    List<Ticket> findAllByOrderByDateCreatedDescIdDesc(Pageable pageable);
+
+    /**
+     * Заявки, созданные раньше заявки с указанным ключом, в порядке убывания даты создания.
+     *
+     * Условие на дату создания вынесено из дизъюнкции, чтобы заявки выбирались диапазоном по индексу.
+     *
+     * @param dateCreated дата создания заявки
+     * @param id идентификатор заявки
+     * @param pageable ограничение количества заявок
+     * @return список заявок
+     */
+    @Query("select t from Ticket t where t.dateCreated <= :dateCreated and (t.dateCreated < :dateCreated or t.id < :id) order by t.dateCreated desc, t.id desc")
+    List<Ticket> findOlderThan(@Param("dateCreated") @Temporal(TemporalType.TIMESTAMP) Date dateCreated, @Param("id") int id, Pageable pageable);
+
+    /**
+     * Заявки, созданные позже заявки с указанным ключом, в порядке возрастания даты создания.
+     *
+     * Условие на дату создания вынесено из дизъюнкции, чтобы заявки выбирались диапазоном по индексу.
+     *
+     * @param dateCreated дата создания заявки
+     * @param id идентификатор заявки
+     * @param pageable ограничение количества заявок
+     * @return список заявок
+     */
+    @Query("select t from Ticket t where t.dateCreated >= :dateCreated and (t.dateCreated > :dateCreated or t.id > :id) order by t.dateCreated asc, t.id asc")
+    List<Ticket> findNewerThan(@Param("dateCreated") @Temporal(TemporalType.TIMESTAMP) Date dateCreated, @Param("id") int id, Pageable pageable);
+
+    /**
+     * Идентификаторы заявок без активности с указанной даты.
+     *
+     * Порядок совпадает с порядком индекса по дате последней активности, поэтому заявки читаются из индекса без
+     * сортировки. Выбранные строки блокируются до конца транзакции переноса в архив, чтобы комментарий, добавленный
+     * одновременно с переносом, не был потерян.
+     *
+     * @param date дата последней активности, до которой заявки выбираются
+     * @param pageable ограничение количества заявок
+     * @return идентификаторы заявок
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t.id from Ticket t where t.lastActivity < :date order by t.lastActivity desc, t.id desc")
+    List<Integer> findIdsByLastActivityBefore(@Param("date") @Temporal(TemporalType.TIMESTAMP) Date date, Pageable pageable);
+
+    /**
+     * Идентификаторы существующих заявок из указанных.
+     *
+     * Выбранные строки блокируются до конца транзакции, поэтому одновременное удаление тех же заявок дожидается её
+     * завершения и не удаляет их повторно.
+     *
+     * @param ids идентификаторы заявок
+     * @return идентификаторы существующих заявок
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t.id from Ticket t where t.id in :ids")
+    List<Integer> findIdsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Удаление заявок одним запросом.
+     *
+     * Запрос выполняется в обход контекста персистентности и событий Hibernate, комментарии заявок должны быть
+     * удалены до его выполнения.
+     *
+     * @param ids идентификаторы заявок
+     * @return количество удалённых заявок
+     */
+    @Modifying
+    @Query("delete from Ticket t where t.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Все заявки в порядке возрастания идентификатора, читаемые курсором.
+     *
+     * Заявки загружаются только для чтения, минуя кеш второго уровня. Поток должен использоваться внутри транзакции
+     * и закрываться после использования.
+     *
+     * @return поток заявок
+     */
+    @QueryHints({
+        @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+        @QueryHint(name = "org.hibernate.readOnly", value = "true"),
+        @QueryHint(name = "org.hibernate.cacheMode", value = "IGNORE")
+    })
+    @Query("select t from Ticket t order by t.id")
+    Stream<Ticket> streamAllByOrderById();
+
+    /**
+     * Получение страницы заявок по курсору.
+     *
+     * Заявки выбираются по условию на ключ (дата создания, идентификатор) без OFFSET и подсчёта общего количества,
+     * поэтому стоимость запроса не зависит от номера страницы. Для определения наличия следующей страницы
+     * запрашивается на одну заявку больше размера страницы. При просмотре к более новым заявкам наличие более старых
+     * заявок проверяется отдельным запросом одной заявки. Если по курсору заявок не найдено, возвращается пустая
+     * страница с курсором, ведущим обратно к заявке курсора.
+     *
+     * @param cursor курсор или null для первой страницы
+     * @param size размер страницы
+     * @return страница заявок в порядке убывания даты создания
+     */
+    default CursorSlice<Ticket> findAll(TicketCursor cursor, int size) {
+        Pageable pageable = new PageRequest(0, size + 1);
+        List<Ticket> tickets;
+        if (cursor == null) {
+            tickets = findAllByOrderByDateCreatedDescIdDesc(pageable);
+        } else if (cursor.isBackward()) {
+            tickets = findNewerThan(cursor.getDateCreated(), cursor.getId(), pageable);
+        } else {
+            tickets = findOlderThan(cursor.getDateCreated(), cursor.getId(), pageable);
+        }
+
+        boolean hasMore = tickets.size() > size;
+        List<Ticket> content = new ArrayList<>(hasMore ? tickets.subList(0, size) : tickets);
+        if (content.isEmpty()) {
+            if (cursor == null) {
+                return new CursorSlice<>(content, size, null, null);
+            }
+
+            // курсор, сдвинутый на единицу идентификатора, включает заявку исходного курсора
+            TicketCursor returnCursor = cursor.isBackward()
+                    ? new TicketCursor(false, cursor.getDateCreated(), cursor.getId() + 1)
+                    : new TicketCursor(true, cursor.getDateCreated(), cursor.getId() - 1);
+            return cursor.isBackward()
+                    ? new CursorSlice<>(content, size, null, returnCursor.encode())
+                    : new CursorSlice<>(content, size, returnCursor.encode(), null);
+        }
+
+        boolean hasPrevious = cursor != null;
+        boolean hasNext = hasMore;
+        if (cursor != null && cursor.isBackward()) {
+            Collections.reverse(content);
+            Ticket last = content.get(content.size() - 1);
+            hasPrevious = hasMore;
+            hasNext = !findOlderThan(last.getDateCreated(), last.getId(), new PageRequest(0, 1)).isEmpty();
+        }
+
+        return new CursorSlice<>(content, size,
+                hasPrevious ? TicketCursor.before(content.get(0)).encode() : null,
+                hasNext ? TicketCursor.after(content.get(content.size() - 1)).encode() : null);
+    }
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.services;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import name.alexkosarev.tutorials.helpdesk.entities.ArchivedTicket;
+import name.alexkosarev.tutorials.helpdesk.events.TicketChangeEvent;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentView;
+import name.alexkosarev.tutorials.helpdesk.repositories.ArchivedTicketCommentRepository;
+import name.alexkosarev.tutorials.helpdesk.repositories.ArchivedTicketRepository;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Перенос заявок без активности в архив.
+ *
+ * Заявки, последняя активность которых была раньше заданного срока, переносятся вместе с комментариями в архивные
+ * таблицы пачками, каждая пачка в отдельной транзакции: строки копируются запросами INSERT ... SELECT и удаляются из
+ * рабочих таблиц массовым удалением. О каждой перенесённой заявке публикуется событие удаления, как при удалении
+ * заявок через API. Перенос по расписанию включается свойством helpdesk.tickets.archive.enabled.
+ *
+ * @author Alexander Kosarev
+ */
+@Slf4j
+@Service
+public class TicketArchiveService {
+
+    private final TicketRepository repository;
+
+    private final ArchivedTicketRepository archivedTicketRepository;
+
+    private final ArchivedTicketCommentRepository archivedTicketCommentRepository;
+
+    private final TicketDeletionService ticketDeletionService;
+
+    private final TicketCountService ticketCountService;
+
+    private final TicketSearchService ticketSearchService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final long maxAge;
+
+    private final int batchSize;
+
+    public TicketArchiveService(TicketRepository repository, ArchivedTicketRepository archivedTicketRepository,
+            ArchivedTicketCommentRepository archivedTicketCommentRepository, TicketDeletionService ticketDeletionService,
+            TicketCountService ticketCountService, TicketSearchService ticketSearchService,
+            ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager,
+            @Value("${helpdesk.tickets.archive.enabled:false}") boolean enabled,
+            @Value("${helpdesk.tickets.archive.max-age-days:365}") int maxAgeDays,
+            @Value("${helpdesk.tickets.archive.batch-size:500}") int batchSize) {
+        this.repository = repository;
+        this.archivedTicketRepository = archivedTicketRepository;
+        this.archivedTicketCommentRepository = archivedTicketCommentRepository;
+        this.ticketDeletionService = ticketDeletionService;
+        this.ticketCountService = ticketCountService;
+        this.ticketSearchService = ticketSearchService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxAge = TimeUnit.DAYS.toMillis(maxAgeDays);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Перенос заявок в архив по расписанию.
+     */
+    @Scheduled(initialDelayString = "${helpdesk.tickets.archive.interval:3600000}",
+            fixedDelayString = "${helpdesk.tickets.archive.interval:3600000}")
+    public void scheduledArchive() {
+        if (enabled) {
+            archive();
+        }
+    }
+
+    /**
+     * Перенос в архив всех заявок, последняя активность которых была раньше заданного срока.
+     *
+     * @return количество перенесённых заявок
+     */
+    public int archive() {
+        Date lastActivity = new Date(System.currentTimeMillis() - maxAge);
+
+        int count = 0;
+        List<Integer> ids;
+        do {
+            ids = transactionTemplate.execute(status -> archiveBatch(lastActivity));
+            ticketCountService.decrement(ids.size());
+            ticketSearchService.delete(ids);
+            ids.forEach(id -> eventPublisher.publishEvent(TicketChangeEvent.ticketDeleted(id)));
+            count += ids.size();
+        } while (ids.size() == batchSize);
+
+        if (count > 0) {
+            log.info("{} tickets without activity since {} are moved to the archive", count, lastActivity);
+        }
+
+        return count;
+    }
+
+    /**
+     * Получение архивной заявки.
+     *
+     * @param id идентификатор заявки
+     * @return архивная заявка или null, если заявка с таким идентификатором не архивировалась
+     */
+    public ArchivedTicket findOne(int id) {
+        return archivedTicketRepository.findOne(id);
+    }
+
+    /**
+     * Страница комментариев архивной заявки.
+     *
+     * @param id идентификатор архивной заявки
+     * @param pageable параметры пейджинации и сортировки
+     * @return страница комментариев
+     */
+    public Slice<TicketCommentView> findComments(int id, Pageable pageable) {
+        return archivedTicketCommentRepository.findByTicketId(id, pageable);
+    }
+
+    /**
+     * Поиск архивных заявок по подстроке проблемы или описания проблемы.
+     *
+     * @param query подстрока, пустая строка соответствует всем архивным заявкам
+     * @param pageable параметры пейджинации
+     * @return страница архивных заявок в порядке убывания даты создания
+     */
+    public Slice<ArchivedTicket> search(String query, Pageable pageable) {
+        return archivedTicketRepository.search(query.trim(), pageable);
+    }
+
+    private List<Integer> archiveBatch(Date lastActivity) {
+        List<Integer> ids = repository.findIdsByLastActivityBefore(lastActivity, new PageRequest(0, batchSize));
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        archivedTicketRepository.copyFromTickets(ids);
+        archivedTicketCommentRepository.copyFromTicketComments(ids);
+        ticketDeletionService.delete(ids);
+
+        return ids;
+    }
+}
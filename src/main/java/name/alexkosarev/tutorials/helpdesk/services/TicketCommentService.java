@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.services;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.entities.TicketComment;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketCommentRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Добавление и удаление комментариев заявки.
+ *
+ * Вместе с комментарием в той же транзакции изменяются количество комментариев и дата последней активности заявки.
+ * Строка заявки перечитывается с блокировкой, поэтому одновременные изменения комментариев одной заявки не теряют
+ * приращения счётчика. Заявка сохраняется как сущность, а не массовым запросом, чтобы не сбрасывать кеш второго уровня
+ * всех заявок и оповестить об изменении кеш страниц списка.
+ *
+ * @author Alexander Kosarev
+ */
+@Slf4j
+@Service
+@AllArgsConstructor
+public class TicketCommentService {
+
+    private final TicketCommentRepository repository;
+
+    private final EntityManager entityManager;
+
+    /**
+     * Добавление комментария к заявке.
+     *
+     * @param comment комментарий
+     * @return сохранённый комментарий
+     */
+    @Transactional
+    public TicketComment create(TicketComment comment) {
+        Ticket ticket = lock(comment.getTicket());
+        comment.setTicket(ticket);
+        TicketComment savedComment = repository.save(comment);
+
+        ticket.setCommentCount(ticket.getCommentCount() + 1);
+        touch(ticket, savedComment.getDateCreated());
+
+        return savedComment;
+    }
+
+    /**
+     * Добавление пачки комментариев в одной транзакции.
+     *
+     * Комментарии группируются по заявкам, каждая заявка блокируется один раз в порядке возрастания идентификаторов, а
+     * комментарии одной заявки сохраняются в исходном порядке. Комментарии к заявкам, удалённым до сохранения,
+     * пропускаются.
+     *
+     * @param comments комментарии, у которых заполнен идентификатор заявки
+     * @return сохранённые комментарии
+     */
+    @Transactional
+    public List<TicketComment> createAll(List<TicketComment> comments) {
+        Map<Integer, List<TicketComment>> commentsByTicket = new TreeMap<>();
+        comments.forEach(comment -> commentsByTicket.computeIfAbsent(comment.getTicket().getId(), id -> new ArrayList<>())
+                .add(comment));
+
+        List<TicketComment> savedComments = new ArrayList<>(comments.size());
+        commentsByTicket.forEach((ticketId, ticketComments) -> {
+            Ticket ticket = lock(ticketComments.get(0).getTicket());
+            if (ticket == null) {
+                log.warn("{} comments for deleted ticket #{} are skipped", ticketComments.size(), ticketId);
+                return;
+            }
+
+            Date lastCreated = ticket.getLastActivity();
+            for (TicketComment comment : ticketComments) {
+                comment.setTicket(ticket);
+                savedComments.add(repository.save(comment));
+                lastCreated = comment.getDateCreated();
+            }
+
+            ticket.setCommentCount(ticket.getCommentCount() + ticketComments.size());
+            touch(ticket, lastCreated);
+        });
+
+        return savedComments;
+    }
+
+    /**
+     * Удаление комментария заявки.
+     *
+     * @param comment комментарий
+     */
+    @Transactional
+    public void delete(TicketComment comment) {
+        Ticket ticket = lock(comment.getTicket());
+        repository.delete(comment);
+
+        ticket.setCommentCount(Math.max(0, ticket.getCommentCount() - 1));
+        touch(ticket, new Date());
+    }
+
+    private Ticket lock(Ticket ticket) {
+        if (!entityManager.contains(ticket)) {
+            // слияние отсоединённой заявки устаревшей версии завершилось бы ошибкой оптимистической блокировки
+            return entityManager.find(Ticket.class, ticket.getId(), LockModeType.PESSIMISTIC_WRITE);
+        }
+
+        entityManager.refresh(ticket, LockModeType.PESSIMISTIC_WRITE);
+        return ticket;
+    }
+
+    private static void touch(Ticket ticket, Date date) {
+        ticket.setLastActivity(date);
+        ticket.setDateModified(date);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.services;
+
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Приблизительное количество заявок для отображения полной панели пейджинации.
+ *
+ * Количество заявок подсчитывается в фоне с заданным интервалом и корректируется при создании и удалении заявок,
+ * поэтому отображение списка заявок не требует отдельного запроса count. Подсчёт выключен по умолчанию.
+ *
+ * Заявки, созданные и удалённые во время подсчёта, учитываются отдельно и прибавляются к результату подсчёта, чтобы
+ * публикация результата не затирала корректировки, сделанные во время запроса.
+ *
+ * @author Alexander Kosarev
+ */
+@Service
+public class TicketCountService {
+
+    private final TicketRepository repository;
+
+    private final boolean enabled;
+
+    private volatile Long approximateCount;
+
+    private boolean refreshing;
+
+    private long refreshDelta;
+
+    public TicketCountService(TicketRepository repository,
+            @Value("${helpdesk.tickets.approximate-count.enabled:false}") boolean enabled) {
+        this.repository = repository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Обновление количества заявок.
+     */
+    @Scheduled(fixedDelayString = "${helpdesk.tickets.approximate-count.refresh-interval:60000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (this) {
+            refreshing = true;
+            refreshDelta = 0;
+        }
+
+        try {
+            long count = repository.count();
+            synchronized (this) {
+                approximateCount = Math.max(0, count + refreshDelta);
+            }
+        } finally {
+            synchronized (this) {
+                refreshing = false;
+            }
+        }
+    }
+
+    /**
+     * Учёт созданной заявки до следующего обновления.
+     */
+    public synchronized void increment() {
+        increment(1);
+    }
+
+    /**
+     * Учёт нескольких созданных заявок до следующего обновления.
+     *
+     * @param count количество созданных заявок
+     */
+    public synchronized void increment(int count) {
+        if (refreshing) {
+            refreshDelta += count;
+        }
+        if (approximateCount != null) {
+            approximateCount += count;
+        }
+    }
+
+    /**
+     * Учёт удалённой заявки до следующего обновления.
+     */
+    public synchronized void decrement() {
+        decrement(1);
+    }
+
+    /**
+     * Учёт нескольких удалённых заявок до следующего обновления.
+     *
+     * @param count количество удалённых заявок
+     */
+    public synchronized void decrement(int count) {
+        if (refreshing) {
+            refreshDelta -= count;
+        }
+        if (approximateCount != null) {
+            approximateCount = Math.max(0, approximateCount - count);
+        }
+    }
+
+    /**
+     * Приблизительное количество заявок.
+     *
+     * @return количество заявок или null, если подсчёт выключен или ещё не выполнялся
+     */
+    public Long getApproximateCount() {
+        return approximateCount;
+    }
+
+    /**
+     * Приблизительное количество страниц списка заявок.
+     *
+     * @param pageSize размер страницы
+     * @param pageNumber номер текущей страницы
+     * @param hasNext признак наличия следующей страницы
+     * @return количество страниц, но не меньше, чем известно по текущей странице, или null, если количество заявок
+     * неизвестно
+     */
+    public Long getApproximateTotalPages(int pageSize, int pageNumber, boolean hasNext) {
+        Long count = approximateCount;
+        if (count == null) {
+            return null;
+        }
+
+        return Math.max((count + pageSize - 1) / pageSize, pageNumber + (hasNext ? 2L : 1L));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.services;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.pagecache.TicketPageCache;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketCommentRepository;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Удаление заявок вместе с комментариями.
+ *
+ * Комментарии удаляются одним запросом по идентификаторам заявок в той же транзакции, что и заявки, без загрузки
+ * комментариев в контекст персистентности.
+ *
+ * @author Alexander Kosarev
+ */
+@Service
+@AllArgsConstructor
+public class TicketDeletionService {
+
+    private final TicketRepository repository;
+
+    private final TicketCommentRepository ticketCommentRepository;
+
+    private final TicketPageCache ticketPageCache;
+
+    /**
+     * Удаление заявки.
+     *
+     * Заявка удаляется как сущность, поэтому кеши заявки очищаются событиями Hibernate.
+     *
+     * @param ticket заявка
+     */
+    @Transactional
+    public void delete(Ticket ticket) {
+        ticketCommentRepository.deleteByTicketIdIn(Collections.singletonList(ticket.getId()));
+        repository.delete(ticket);
+    }
+
+    /**
+     * Удаление нескольких заявок тремя запросами независимо от их количества.
+     *
+     * Существующие заявки выбираются с блокировкой, поэтому возвращаются идентификаторы только тех заявок, которые
+     * удалены этой транзакцией. Массовое удаление не порождает событий Hibernate, поэтому кеш страниц списка заявок
+     * очищается явно после фиксации транзакции.
+     *
+     * @param ids идентификаторы заявок, несуществующие идентификаторы пропускаются
+     * @return идентификаторы удалённых заявок
+     */
+    @Transactional
+    public List<Integer> delete(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Integer> deletedIds = repository.findIdsByIdIn(ids);
+        if (deletedIds.isEmpty()) {
+            return deletedIds;
+        }
+
+        ticketCommentRepository.deleteByTicketIdIn(deletedIds);
+        repository.deleteByIdIn(deletedIds);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                ticketPageCache.invalidate();
+            }
+        });
+
+        return deletedIds;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import lombok.AllArgsConstructor;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.exports.TicketExportWriter;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentExport;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketCommentRepository;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Выгрузка всех заявок вместе с комментариями.
+ *
+ * Заявки и комментарии читаются двумя курсорами, упорядоченными по идентификатору заявки, и объединяются слиянием,
+ * поэтому в памяти одновременно находятся только текущая заявка и её комментарии, а выгруженные заявки сразу
+ * отсоединяются от контекста персистентности. Расход памяти не зависит от количества заявок.
+ *
+ * @author Alexander Kosarev
+ */
+@Service
+@AllArgsConstructor
+public class TicketExportService {
+
+    private final TicketRepository ticketRepository;
+
+    private final TicketCommentRepository ticketCommentRepository;
+
+    private final EntityManager entityManager;
+
+    /**
+     * Выгрузка заявок.
+     *
+     * @param writer запись в требуемом формате
+     * @throws IOException в случае ошибки записи
+     */
+    @Transactional(readOnly = true)
+    public void export(TicketExportWriter writer) throws IOException {
+        try (Stream<Ticket> tickets = ticketRepository.streamAllByOrderById();
+                Stream<TicketCommentExport> comments = ticketCommentRepository.streamAllForExport()) {
+            Iterator<TicketCommentExport> commentIterator = comments.iterator();
+            TicketCommentExport nextComment = commentIterator.hasNext() ? commentIterator.next() : null;
+
+            Iterator<Ticket> ticketIterator = tickets.iterator();
+            while (ticketIterator.hasNext()) {
+                Ticket ticket = ticketIterator.next();
+
+                List<TicketCommentExport> ticketComments = new ArrayList<>();
+                while (nextComment != null && nextComment.getTicketId() <= ticket.getId()) {
+                    if (nextComment.getTicketId() == ticket.getId()) {
+                        ticketComments.add(nextComment);
+                    }
+                    nextComment = commentIterator.hasNext() ? commentIterator.next() : null;
+                }
+
+                writer.write(ticket, ticketComments);
+                entityManager.detach(ticket);
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.events.TicketChangeEvent;
+import name.alexkosarev.tutorials.helpdesk.forms.TicketForm;
+import name.alexkosarev.tutorials.helpdesk.imports.TicketImportError;
+import name.alexkosarev.tutorials.helpdesk.imports.TicketImportReport;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.MessageSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Импорт заявок из CSV и JSON Lines.
+ *
+ * Данные читаются потоком, каждая строка проверяется по правилам {@link TicketForm}. Строки с ошибками попадают в
+ * отчёт и не прерывают импорт, корректные строки сохраняются пачками, каждая пачка в отдельной транзакции. Вставка
+ * выполняется пакетами JDBC, идентификаторы выделяются из последовательности блоками. После фиксации пачки о каждой
+ * сохранённой заявке публикуется событие, как при создании заявки через форму.
+ *
+ * Отчёт содержит не больше заданного количества ошибок, чтобы большой файл с ошибками не раздувал ответ, но учитывает
+ * общее количество строк с ошибками.
+ *
+ * @author Alexander Kosarev
+ */
+@Service
+public class TicketImportService {
+
+    private static final String ISSUE = "issue";
+
+    private static final String ISSUE_DETAILS = "issueDetails";
+
+    private final TicketRepository repository;
+
+    private final TicketCountService ticketCountService;
+
+    private final TicketSearchService ticketSearchService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Validator validator;
+
+    private final MessageSource messageSource;
+
+    private final ObjectMapper objectMapper;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    private final int maxErrors;
+
+    public TicketImportService(TicketRepository repository, TicketCountService ticketCountService,
+            TicketSearchService ticketSearchService, ApplicationEventPublisher eventPublisher, Validator validator,
+            MessageSource messageSource, ObjectMapper objectMapper, EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            @Value("${helpdesk.tickets.import.batch-size:500}") int batchSize,
+            @Value("${helpdesk.tickets.import.max-errors:100}") int maxErrors) {
+        this.repository = repository;
+        this.ticketCountService = ticketCountService;
+        this.ticketSearchService = ticketSearchService;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
+        this.messageSource = messageSource;
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Импорт заявок из CSV.
+     *
+     * Первая строка должна содержать заголовок с колонкой issue и, необязательно, issueDetails.
+     *
+     * @param reader данные
+     * @param locale локаль сообщений об ошибках
+     * @return отчёт об импорте
+     * @throws IOException в случае ошибки чтения данных
+     */
+    public TicketImportReport importCsv(Reader reader, Locale locale) throws IOException {
+        Batch batch = new Batch(locale);
+
+        CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().withTrim().parse(reader);
+        if (!parser.getHeaderMap().containsKey(ISSUE)) {
+            batch.reject(0, "import.errors.header");
+            return batch.report;
+        }
+        boolean hasIssueDetails = parser.getHeaderMap().containsKey(ISSUE_DETAILS);
+
+        long row = 0;
+        try {
+            for (CSVRecord record : parser) {
+                row = record.getRecordNumber();
+                if (record.isConsistent()) {
+                    batch.add(row, new TicketForm(record.get(ISSUE), hasIssueDetails ? record.get(ISSUE_DETAILS) : null, null));
+                } else {
+                    batch.reject(row, "import.errors.malformed");
+                }
+            }
+        } catch (IllegalStateException e) {
+            // Нарушена структура CSV (например, незакрытые кавычки), продолжить разбор невозможно
+            batch.reject(row + 1, "import.errors.malformed");
+        }
+
+        return batch.finish();
+    }
+
+    /**
+     * Импорт заявок из JSON Lines: каждая непустая строка содержит объект с полями issue и issueDetails.
+     *
+     * @param reader данные
+     * @param locale локаль сообщений об ошибках
+     * @return отчёт об импорте
+     * @throws IOException в случае ошибки чтения данных
+     */
+    public TicketImportReport importJsonLines(Reader reader, Locale locale) throws IOException {
+        Batch batch = new Batch(locale);
+        BufferedReader lines = new BufferedReader(reader);
+
+        long row = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            row++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            try {
+                batch.add(row, objectMapper.readValue(line, TicketForm.class));
+            } catch (JsonProcessingException e) {
+                batch.reject(row, "import.errors.malformed");
+            }
+        }
+
+        return batch.finish();
+    }
+
+    /**
+     * Накопление проверенных заявок и их сохранение пачками.
+     */
+    private class Batch {
+
+        private final Locale locale;
+
+        private final TicketImportReport report = new TicketImportReport();
+
+        private final List<Ticket> tickets = new ArrayList<>();
+
+        Batch(Locale locale) {
+            this.locale = locale;
+        }
+
+        void add(long row, TicketForm form) {
+            Set<ConstraintViolation<TicketForm>> violations = validator.validate(form);
+            if (!violations.isEmpty()) {
+                error(new TicketImportError(row, violations.stream()
+                        .map(violation -> messageSource.getMessage(violation.getMessage(), null,
+                                violation.getMessage(), locale))
+                        .sorted()
+                        .collect(Collectors.toList())));
+                return;
+            }
+
+            tickets.add(form.toTicket());
+            if (tickets.size() >= batchSize) {
+                save();
+            }
+        }
+
+        void reject(long row, String code) {
+            error(new TicketImportError(row,
+                    Collections.singletonList(messageSource.getMessage(code, null, code, locale))));
+        }
+
+        private void error(TicketImportError error) {
+            report.setErrorCount(report.getErrorCount() + 1);
+            if (report.getErrors().size() < maxErrors) {
+                report.getErrors().add(error);
+            }
+        }
+
+        TicketImportReport finish() {
+            save();
+            return report;
+        }
+
+        private void save() {
+            if (tickets.isEmpty()) {
+                return;
+            }
+
+            transactionTemplate.execute(status -> repository.save(tickets));
+            // Сохранённые заявки больше не нужны в контексте персистентности запроса
+            entityManager.clear();
+
+            ticketCountService.increment(tickets.size());
+            ticketSearchService.index(tickets);
+            tickets.forEach(ticket -> eventPublisher.publishEvent(TicketChangeEvent.ticketCreated(ticket)));
+            report.setImported(report.getImported() + tickets.size());
+            tickets.clear();
+        }
+    }
+}
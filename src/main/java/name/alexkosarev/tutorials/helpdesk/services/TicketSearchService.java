@@ -0,0 +1,345 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.exceptions.SearchResultWindowExceededException;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentText;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketCommentRepository;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Полнотекстовый поиск заявок по проблеме, описанию проблемы и комментариям.
+ *
+ * Индекс Lucene хранится в каталоге на диске, который отображается в память, и содержит по одному документу на
+ * заявку. Индекс обновляется обработчиками создания, редактирования и удаления заявок и комментариев, а после запуска
+ * приложения перестраивается в фоновом потоке. Пока индекс перестраивается, поиск работает по прежнему индексу:
+ * документы перезаписываются с меткой нового построения, а документы без неё удаляются в конце построения.
+ *
+ * Поиск возвращает страницы только в пределах окна результатов, поскольку для страницы Lucene собирает все
+ * предшествующие ей результаты.
+ *
+ * @author Alexander Kosarev
+ */
+@Slf4j
+@Service
+public class TicketSearchService {
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    private static final String ID = "id";
+
+    private static final String ISSUE = "issue";
+
+    private static final String ISSUE_DETAILS = "issueDetails";
+
+    private static final String COMMENT = "comment";
+
+    private static final String GENERATION = "generation";
+
+    /**
+     * Веса полей: совпадение в проблеме важнее совпадения в описании или комментарии
+     */
+    private static final Map<String, Float> FIELD_WEIGHTS;
+
+    static {
+        Map<String, Float> weights = new HashMap<>();
+        weights.put(ISSUE, 3f);
+        weights.put(ISSUE_DETAILS, 1f);
+        weights.put(COMMENT, 1f);
+        FIELD_WEIGHTS = Collections.unmodifiableMap(weights);
+    }
+
+    private final TicketRepository ticketRepository;
+
+    private final TicketCommentRepository ticketCommentRepository;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private final IndexWriter indexWriter;
+
+    private final SearcherManager searcherManager;
+
+    private final ExecutorService rebuilder;
+
+    private final int maxResultWindow;
+
+    private volatile String generation = UUID.randomUUID().toString();
+
+    private volatile boolean closed;
+
+    public TicketSearchService(TicketRepository ticketRepository, TicketCommentRepository ticketCommentRepository,
+            @Value("${helpdesk.search.index-path:helpdesk-search-index}") String indexPath,
+            @Value("${helpdesk.search.max-result-window:1000}") int maxResultWindow) throws IOException {
+        this.ticketRepository = ticketRepository;
+        this.ticketCommentRepository = ticketCommentRepository;
+        this.indexWriter = new IndexWriter(FSDirectory.open(Paths.get(indexPath)), new IndexWriterConfig(analyzer));
+        this.searcherManager = new SearcherManager(indexWriter, null);
+        this.rebuilder = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("ticket-search-rebuild-"));
+        this.maxResultWindow = maxResultWindow;
+    }
+
+    /**
+     * Построение индекса в фоновом потоке после запуска приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAsync() {
+        rebuilder.execute(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("Unable to build search index", e);
+            }
+        });
+    }
+
+    /**
+     * Построение индекса по всем заявкам.
+     *
+     * Заявки обходятся пачками по ключу (дата создания, идентификатор), комментарии загружаются одним запросом на
+     * пачку. Документы заявок, не записанные этим построением, удаляются после обхода.
+     */
+    public void rebuild() {
+        try {
+            String rebuildGeneration = UUID.randomUUID().toString();
+            generation = rebuildGeneration;
+
+            Pageable pageable = new PageRequest(0, REBUILD_BATCH_SIZE);
+            List<Ticket> tickets = ticketRepository.findAllByOrderByDateCreatedDescIdDesc(pageable);
+            int count = 0;
+            while (!tickets.isEmpty()) {
+                if (closed) {
+                    return;
+                }
+                write(tickets);
+                count += tickets.size();
+
+                Ticket last = tickets.get(tickets.size() - 1);
+                tickets = tickets.size() < REBUILD_BATCH_SIZE ? Collections.emptyList()
+                        : ticketRepository.findOlderThan(last.getDateCreated(), last.getId(), pageable);
+            }
+
+            indexWriter.deleteDocuments(new BooleanQuery.Builder()
+                    .add(new MatchAllDocsQuery(), BooleanClause.Occur.FILTER)
+                    .add(new TermQuery(new Term(GENERATION, rebuildGeneration)), BooleanClause.Occur.MUST_NOT)
+                    .build());
+            indexWriter.commit();
+            searcherManager.maybeRefreshBlocking();
+            log.info("Search index is built for {} tickets", count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Добавление или обновление заявки в индексе вместе с её комментариями.
+     *
+     * @param ticket заявка
+     */
+    public void index(Ticket ticket) {
+        index(Collections.singletonList(ticket));
+    }
+
+    /**
+     * Добавление или обновление заявок в индексе вместе с их комментариями.
+     *
+     * Комментарии загружаются одним запросом для всех заявок.
+     *
+     * @param tickets заявки
+     */
+    public void index(Collection<Ticket> tickets) {
+        if (tickets.isEmpty()) {
+            return;
+        }
+
+        try {
+            write(tickets);
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Удаление заявки из индекса.
+     *
+     * @param ticket заявка
+     */
+    public void delete(Ticket ticket) {
+        delete(Collections.singletonList(ticket.getId()));
+    }
+
+    /**
+     * Удаление заявок из индекса.
+     *
+     * @param ids идентификаторы заявок
+     */
+    public void delete(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        try {
+            indexWriter.deleteDocuments(ids.stream()
+                    .map(id -> new Term(ID, String.valueOf(id)))
+                    .toArray(Term[]::new));
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Проверка, что страница лежит в пределах окна результатов поиска.
+     *
+     * @param pageable параметры пейджинации
+     * @throws SearchResultWindowExceededException если страница заканчивается за пределами окна результатов
+     */
+    public void checkResultWindow(Pageable pageable) throws SearchResultWindowExceededException {
+        if ((long) pageable.getOffset() + pageable.getPageSize() > maxResultWindow) {
+            throw new SearchResultWindowExceededException("Search results are limited to " + maxResultWindow);
+        }
+    }
+
+    /**
+     * Поиск заявок.
+     *
+     * Поддерживается синтаксис {@link SimpleQueryParser}: все слова запроса должны присутствовать в заявке, фразы
+     * заключаются в кавычки, префиксы обозначаются звёздочкой. Заявки упорядочены по релевантности. Страница
+     * ограничивается окном результатов, см. {@link #checkResultWindow(Pageable)}.
+     *
+     * @param text поисковый запрос
+     * @param pageable параметры пейджинации
+     * @return страница найденных заявок
+     */
+    public Page<Ticket> search(String text, Pageable pageable) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_WEIGHTS);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query query = parser.parse(text);
+
+        List<Integer> ids = new ArrayList<>();
+        int totalHits;
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                int window = (int) Math.min((long) pageable.getOffset() + pageable.getPageSize(), maxResultWindow);
+                TopDocs topDocs = searcher.search(query, Math.max(window, 1));
+                totalHits = topDocs.totalHits;
+                ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+                for (int i = pageable.getOffset(); i < scoreDocs.length; i++) {
+                    ids.add(Integer.valueOf(searcher.doc(scoreDocs[i].doc).get(ID)));
+                }
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (ids.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, totalHits);
+        }
+
+        Map<Integer, Ticket> tickets = new HashMap<>();
+        ticketRepository.findAll(ids).forEach(ticket -> tickets.put(ticket.getId(), ticket));
+
+        return new PageImpl<>(ids.stream()
+                .map(tickets::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()), pageable, totalHits);
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        // поток построения не прерывается: прерывание ввода-вывода закрыло бы файлы индекса
+        closed = true;
+        rebuilder.shutdown();
+        rebuilder.awaitTermination(1, TimeUnit.MINUTES);
+        searcherManager.close();
+        indexWriter.close();
+    }
+
+    private void write(Collection<Ticket> tickets) throws IOException {
+        Map<Integer, List<String>> comments = ticketCommentRepository.findTextsByTicketIn(tickets).stream()
+                .collect(Collectors.groupingBy(TicketCommentText::getTicketId,
+                        Collectors.mapping(TicketCommentText::getComment, Collectors.toList())));
+
+        for (Ticket ticket : tickets) {
+            Document document = new Document();
+            document.add(new StringField(ID, String.valueOf(ticket.getId()), Field.Store.YES));
+            document.add(new StringField(GENERATION, generation, Field.Store.NO));
+            addText(document, ISSUE, ticket.getIssue());
+            addText(document, ISSUE_DETAILS, ticket.getIssueDetails());
+            for (String comment : comments.getOrDefault(ticket.getId(), Collections.emptyList())) {
+                addText(document, COMMENT, comment);
+            }
+
+            indexWriter.updateDocument(new Term(ID, String.valueOf(ticket.getId())), document);
+        }
+    }
+
+    private static void addText(Document document, String field, String text) {
+        if (text != null) {
+            document.add(new TextField(field, text, Field.Store.NO));
+        }
+    }
+}
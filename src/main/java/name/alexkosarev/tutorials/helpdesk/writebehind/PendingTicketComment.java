@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.writebehind;
+
+import java.util.Date;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.entities.TicketComment;
+
+/**
+ * Комментарий, принятый в очередь отложенной записи, в виде записи журнала.
+ *
+ * @author Alexander Kosarev
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingTicketComment {
+
+    /**
+     * Порядковый номер записи в журнале
+     */
+    private long sequence;
+
+    private int ticketId;
+
+    private String comment;
+
+    private Date dateCreated;
+
+    public static PendingTicketComment of(long sequence, TicketComment comment) {
+        return new PendingTicketComment(sequence, comment.getTicket().getId(), comment.getComment(),
+                comment.getDateCreated());
+    }
+
+    /**
+     * Комментарий для сохранения, ссылающийся на заявку только идентификатором.
+     *
+     * @return несохранённый комментарий
+     */
+    public TicketComment toTicketComment() {
+        Ticket ticket = new Ticket();
+        ticket.setId(ticketId);
+
+        TicketComment ticketComment = new TicketComment();
+        ticketComment.setComment(comment);
+        ticketComment.setDateCreated(dateCreated);
+        ticketComment.setTicket(ticket);
+
+        return ticketComment;
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.writebehind;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Локальный журнал комментариев очереди отложенной записи.
+ *
+ * Каждый принятый комментарий дописывается в файл журнала строкой JSON до подтверждения пользователю. Номер последней
+ * записи, сохранённой в базе данных, хранится в соседнем файле с расширением .checkpoint и заменяется атомарно. Когда
+ * сохранены все записи журнала, файл журнала очищается, а если очередь не опустошается, но сохранённые записи в
+ * начале файла превысили размер сжатия, несохранённые записи переписываются в новый файл, заменяющий журнал. После
+ * аварийной остановки записи с номером больше сохранённого возвращаются для повторной записи, поэтому комментарий,
+ * сохранённый в базе непосредственно перед остановкой, может быть записан повторно. Комментарии, которые не удалось
+ * сохранить, дописываются в файл с расширением .dead для разбора вручную.
+ *
+ * @author Alexander Kosarev
+ */
+@Slf4j
+public class TicketCommentJournal implements Closeable {
+
+    /**
+     * Размер сжатия журнала по умолчанию
+     */
+    public static final long DEFAULT_COMPACTION_SIZE = 1024 * 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path path;
+
+    private final Path checkpointPath;
+
+    private final Path deadLetterPath;
+
+    private final boolean fsync;
+
+    private final long compactionSize;
+
+    /**
+     * Номера несохранённых записей и их смещения в файле журнала в порядке добавления
+     */
+    private final Deque<long[]> offsets = new ArrayDeque<>();
+
+    private FileChannel channel;
+
+    private long size;
+
+    private long lastSequence;
+
+    private long checkpoint;
+
+    public TicketCommentJournal(Path path, boolean fsync) {
+        this(path, fsync, DEFAULT_COMPACTION_SIZE);
+    }
+
+    public TicketCommentJournal(Path path, boolean fsync, long compactionSize) {
+        this.path = path;
+        this.checkpointPath = Paths.get(path.toString() + ".checkpoint");
+        this.deadLetterPath = Paths.get(path.toString() + ".dead");
+        this.fsync = fsync;
+        this.compactionSize = compactionSize;
+    }
+
+    /**
+     * Открытие журнала для записи и чтение записей, не сохранённых в базе данных.
+     *
+     * @return несохранённые записи в порядке добавления
+     * @throws IOException если журнал не удалось прочитать или открыть
+     */
+    public synchronized List<PendingTicketComment> open() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        if (Files.exists(checkpointPath)) {
+            checkpoint = Long.parseLong(new String(Files.readAllBytes(checkpointPath), StandardCharsets.UTF_8).trim());
+        }
+        lastSequence = checkpoint;
+
+        List<PendingTicketComment> pending = new ArrayList<>();
+        boolean completeLastLine = true;
+        if (Files.exists(path)) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                long lineOffset = 0;
+                long offset = 0;
+                int b;
+                while ((b = in.read()) != -1) {
+                    offset++;
+                    if (b != '\n') {
+                        line.write(b);
+                        continue;
+                    }
+
+                    read(line, lineOffset, pending);
+                    line.reset();
+                    lineOffset = offset;
+                }
+
+                if (line.size() > 0) {
+                    read(line, lineOffset, pending);
+                    completeLastLine = false;
+                }
+            }
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        size = channel.size();
+        if (!completeLastLine) {
+            // недописанная перед остановкой запись не должна склеиться со следующей
+            write("\n");
+        }
+
+        return pending;
+    }
+
+    private void read(ByteArrayOutputStream line, long offset, List<PendingTicketComment> pending) {
+        String value = new String(line.toByteArray(), StandardCharsets.UTF_8);
+        if (value.isEmpty()) {
+            return;
+        }
+
+        try {
+            PendingTicketComment comment = objectMapper.readValue(value, PendingTicketComment.class);
+            lastSequence = Math.max(lastSequence, comment.getSequence());
+            if (comment.getSequence() > checkpoint) {
+                pending.add(comment);
+                offsets.add(new long[]{comment.getSequence(), offset});
+            }
+        } catch (IOException e) {
+            log.warn("Skipping corrupted ticket comment journal entry: {}", value, e);
+        }
+    }
+
+    /**
+     * Добавление записи в журнал.
+     *
+     * @param comment комментарий с номером, большим номера последней записи
+     * @throws IOException если запись не удалась
+     */
+    public synchronized void append(PendingTicketComment comment) throws IOException {
+        long offset = size;
+        write(objectMapper.writeValueAsString(comment) + '\n');
+        offsets.add(new long[]{comment.getSequence(), offset});
+        lastSequence = comment.getSequence();
+    }
+
+    /**
+     * Отметка о сохранении в базе данных всех записей до указанной включительно.
+     *
+     * @param sequence номер последней сохранённой записи
+     * @throws IOException если отметку не удалось записать
+     */
+    public synchronized void checkpoint(long sequence) throws IOException {
+        Path tempPath = Paths.get(checkpointPath.toString() + ".tmp");
+        try (FileChannel tempChannel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Long.toString(sequence).getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                tempChannel.write(buffer);
+            }
+            if (fsync) {
+                tempChannel.force(true);
+            }
+        }
+        Files.move(tempPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (fsync) {
+            forceDirectory();
+        }
+        checkpoint = sequence;
+
+        while (!offsets.isEmpty() && offsets.peekFirst()[0] <= sequence) {
+            offsets.removeFirst();
+        }
+
+        if (offsets.isEmpty()) {
+            channel.truncate(0);
+            size = 0;
+        } else if (offsets.peekFirst()[1] >= compactionSize) {
+            compact(offsets.peekFirst()[1]);
+        }
+    }
+
+    /**
+     * Перенос несохранённых записей, начиная с указанного смещения, в новый файл журнала.
+     */
+    private void compact(long from) throws IOException {
+        Path tempPath = Paths.get(path.toString() + ".tmp");
+        try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ);
+                FileChannel target = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = from;
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+            if (fsync) {
+                target.force(true);
+            }
+        }
+
+        channel.close();
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (fsync) {
+            forceDirectory();
+        }
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size -= from;
+        offsets.forEach(entry -> entry[1] -= from);
+    }
+
+    /**
+     * Перенос несохранённой записи в журнал недоставленных комментариев.
+     *
+     * @param comment запись журнала
+     * @throws IOException если запись не удалась
+     */
+    public synchronized void deadLetter(PendingTicketComment comment) throws IOException {
+        Files.write(deadLetterPath, (objectMapper.writeValueAsString(comment) + '\n').getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    private void write(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        size += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    private void forceDirectory() {
+        Path directory = path.toAbsolutePath().getParent();
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            // не все файловые системы позволяют синхронизировать каталог
+            log.debug("Unable to fsync directory {}", directory, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
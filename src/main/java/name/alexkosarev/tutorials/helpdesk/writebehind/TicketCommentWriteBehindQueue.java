@@ -0,0 +1,356 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.writebehind;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.entities.TicketComment;
+import name.alexkosarev.tutorials.helpdesk.events.TicketChangeEvent;
+import name.alexkosarev.tutorials.helpdesk.services.TicketCommentService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketSearchService;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Очередь отложенной записи комментариев.
+ *
+ * В режиме отложенной записи обработчик запроса только дописывает проверенный комментарий в локальный журнал и
+ * ограниченную очередь в памяти, а фоновый поток сохраняет комментарии пачками через
+ * {@link TicketCommentService#createAll(List)}. Очередь обрабатывается одним потоком в порядке добавления, поэтому
+ * порядок комментариев каждой заявки сохраняется. После сохранения пачки отдельный поток переиндексирует заявки и
+ * публикует события о новых комментариях, поэтому ошибки индексации и подписчиков не останавливают запись.
+ *
+ * Если пачку не удалось сохранить из-за недоступности базы данных или другой ошибки, не связанной с данными, запись
+ * пачки повторяется без ограничения числа попыток с растущей задержкой: комментарии остаются в журнале и не
+ * теряются. Если пачка нарушает ограничения базы данных или не проходит валидацию, комментарии пачки сохраняются по
+ * одному, а комментарии с ошибкой данных переносятся в журнал недоставленных комментариев
+ * {@link TicketCommentJournal#deadLetter(PendingTicketComment)}, чтобы одна ошибочная строка не останавливала
+ * очередь.
+ *
+ * При запуске комментарии, оставшиеся в журнале после аварийной остановки, сохраняются раньше новых. Если очередь
+ * заполнена или комментарий не удалось записать в журнал, комментарий не принимается. Сохранять его синхронно
+ * нельзя, потому что он опередил бы комментарии той же заявки, ещё не сохранённые из очереди.
+ *
+ * @author Alexander Kosarev
+ */
+@Slf4j
+@Component
+public class TicketCommentWriteBehindQueue implements InitializingBean, DisposableBean {
+
+    private final TicketCommentService ticketCommentService;
+
+    private final TicketSearchService ticketSearchService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final boolean enabled;
+
+    private final TicketCommentJournal journal;
+
+    private final BlockingQueue<PendingTicketComment> queue;
+
+    private final int batchSize;
+
+    private final long flushInterval;
+
+    private final long retryDelay;
+
+    private final long maxRetryDelay;
+
+    private final long shutdownTimeout;
+
+    private final Timer flushTimer;
+
+    private final Meter rejections;
+
+    private final Meter deadLetters;
+
+    private ExecutorService worker;
+
+    private ExecutorService notifier;
+
+    private List<PendingTicketComment> recovered = Collections.emptyList();
+
+    private long sequence;
+
+    private volatile boolean closed;
+
+    public TicketCommentWriteBehindQueue(TicketCommentService ticketCommentService,
+            TicketSearchService ticketSearchService, ApplicationEventPublisher eventPublisher,
+            MetricRegistry metricRegistry,
+            @Value("${helpdesk.comments.write-behind.enabled:false}") boolean enabled,
+            @Value("${helpdesk.comments.write-behind.journal:helpdesk-comments.journal}") String journal,
+            @Value("${helpdesk.comments.write-behind.journal-compaction-size:1048576}") long journalCompactionSize,
+            @Value("${helpdesk.comments.write-behind.fsync:true}") boolean fsync,
+            @Value("${helpdesk.comments.write-behind.capacity:10000}") int capacity,
+            @Value("${helpdesk.comments.write-behind.batch-size:100}") int batchSize,
+            @Value("${helpdesk.comments.write-behind.flush-interval:200}") long flushInterval,
+            @Value("${helpdesk.comments.write-behind.retry-delay:1000}") long retryDelay,
+            @Value("${helpdesk.comments.write-behind.max-retry-delay:30000}") long maxRetryDelay,
+            @Value("${helpdesk.comments.write-behind.shutdown-timeout:30000}") long shutdownTimeout) {
+        this.ticketCommentService = ticketCommentService;
+        this.ticketSearchService = ticketSearchService;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.journal = new TicketCommentJournal(Paths.get(journal), fsync, journalCompactionSize);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+        this.shutdownTimeout = shutdownTimeout;
+        this.flushTimer = metricRegistry.timer("helpdesk.comments.write-behind.flush");
+        this.rejections = metricRegistry.meter("helpdesk.comments.write-behind.rejections");
+        this.deadLetters = metricRegistry.meter("helpdesk.comments.write-behind.dead-letters");
+        metricRegistry.register("helpdesk.comments.write-behind.depth", (Gauge<Integer>) queue::size);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        recovered = journal.open();
+        sequence = journal.getLastSequence();
+        if (!recovered.isEmpty()) {
+            log.info("{} ticket comments are recovered from the journal", recovered.size());
+        }
+
+        notifier = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("ticket-comments-notifier-"));
+        worker = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("ticket-comments-writer-"));
+        worker.execute(this::run);
+    }
+
+    /**
+     * Постановка комментария в очередь.
+     *
+     * @param comment проверенный комментарий к существующей заявке
+     * @return true, если комментарий записан в журнал и будет сохранён в фоне, или false, если режим отложенной записи
+     * выключен, очередь заполнена или комментарий не удалось записать в журнал
+     */
+    public boolean offer(TicketComment comment) {
+        if (!enabled) {
+            return false;
+        }
+
+        synchronized (queue) {
+            if (closed || queue.remainingCapacity() == 0) {
+                rejections.mark();
+                return false;
+            }
+
+            PendingTicketComment pending = PendingTicketComment.of(sequence + 1, comment);
+            try {
+                journal.append(pending);
+            } catch (IOException e) {
+                log.error("Unable to journal ticket comment", e);
+                rejections.mark();
+                return false;
+            }
+
+            sequence = pending.getSequence();
+            queue.add(pending);
+        }
+
+        return true;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public void destroy() throws IOException, InterruptedException {
+        if (!enabled) {
+            return;
+        }
+
+        closed = true;
+        worker.shutdown();
+        if (!worker.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
+            log.warn("{} ticket comments are left in the journal", queue.size());
+            worker.shutdownNow();
+        }
+        notifier.shutdown();
+        if (!notifier.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
+            notifier.shutdownNow();
+        }
+        journal.close();
+    }
+
+    private void run() {
+        try {
+            for (int i = 0; i < recovered.size(); i += batchSize) {
+                flushSafely(recovered.subList(i, Math.min(i + batchSize, recovered.size())));
+            }
+            recovered = Collections.emptyList();
+
+            List<PendingTicketComment> batch = new ArrayList<>(batchSize);
+            while (!closed || !queue.isEmpty()) {
+                PendingTicketComment first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flushSafely(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Сохранение пачки до успеха: непредвиденная ошибка не должна завершать единственный поток записи.
+     */
+    private void flushSafely(List<PendingTicketComment> batch) throws InterruptedException {
+        while (true) {
+            try {
+                flush(batch);
+                return;
+            } catch (RuntimeException e) {
+                log.error("Unexpected failure while flushing {} ticket comments, retrying in {} ms", batch.size(),
+                        retryDelay, e);
+                Thread.sleep(retryDelay);
+            }
+        }
+    }
+
+    private void flush(List<PendingTicketComment> batch) throws InterruptedException {
+        List<TicketComment> savedComments = new ArrayList<>(batch.size());
+        if (!save(batch, savedComments)) {
+            if (batch.size() == 1) {
+                deadLetter(batch.get(0));
+            } else {
+                for (PendingTicketComment pending : batch) {
+                    if (!save(Collections.singletonList(pending), savedComments)) {
+                        deadLetter(pending);
+                    }
+                }
+            }
+        }
+
+        try {
+            journal.checkpoint(batch.get(batch.size() - 1).getSequence());
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to checkpoint ticket comment journal", e);
+        }
+
+        if (!savedComments.isEmpty()) {
+            notifier.execute(() -> notifySaved(savedComments));
+        }
+    }
+
+    /**
+     * Сохранение комментариев одной транзакцией.
+     *
+     * @return true, если комментарии сохранены, или false, если комментарии содержат ошибку данных
+     */
+    private boolean save(List<PendingTicketComment> batch, List<TicketComment> savedComments)
+            throws InterruptedException {
+        long delay = retryDelay;
+        while (true) {
+            // после неудачной транзакции у комментариев могут остаться идентификаторы, поэтому они создаются заново
+            List<TicketComment> comments = batch.stream()
+                    .map(PendingTicketComment::toTicketComment)
+                    .collect(Collectors.toList());
+
+            try (Timer.Context context = flushTimer.time()) {
+                savedComments.addAll(ticketCommentService.createAll(comments));
+                return true;
+            } catch (RuntimeException e) {
+                if (isDataFailure(e)) {
+                    log.error("Unable to save {} ticket comments because of invalid data", batch.size(), e);
+                    return false;
+                }
+
+                log.error("Unable to save {} ticket comments, retrying in {} ms", batch.size(), delay, e);
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, maxRetryDelay);
+            }
+        }
+    }
+
+    private static boolean isDataFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException || cause instanceof ConstraintViolationException
+                    || cause instanceof org.hibernate.exception.ConstraintViolationException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void notifySaved(List<TicketComment> savedComments) {
+        Set<Ticket> tickets = new LinkedHashSet<>();
+        for (TicketComment comment : savedComments) {
+            tickets.add(comment.getTicket());
+            try {
+                eventPublisher.publishEvent(TicketChangeEvent.commentCreated(comment));
+            } catch (RuntimeException e) {
+                log.error("Unable to publish ticket comment event", e);
+            }
+        }
+
+        for (Ticket ticket : tickets) {
+            try {
+                ticketSearchService.index(ticket);
+            } catch (RuntimeException e) {
+                log.error("Unable to index ticket #{}", ticket.getId(), e);
+            }
+        }
+    }
+
+    private void deadLetter(PendingTicketComment comment) {
+        deadLetters.mark();
+        try {
+            journal.deadLetter(comment);
+        } catch (IOException e) {
+            log.error("Unable to dead-letter ticket comment {}", comment, e);
+        }
+    }
+}
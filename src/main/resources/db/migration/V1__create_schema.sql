@@ -0,0 +1,52 @@
+/* 
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+create sequence ticket_seq start with 1 increment by 50;
+
+create sequence ticket_comment_seq start with 1 increment by 50;
+
+-- Длинные тексты хранятся в varchar без ограничения длины: H2 создаёт для TEXT столбец CLOB, который не совпадает
+-- с типом, ожидаемым Hibernate при проверке схемы.
+create table ticket (
+    id integer not null,
+    issue varchar(255) not null,
+    issue_details varchar,
+    date_created timestamp not null,
+    date_modified timestamp not null,
+    comment_count integer not null,
+    last_activity timestamp not null,
+    primary key (id)
+);
+
+-- Список заявок упорядочен по убыванию даты создания, поэтому индексы для списка построены в том же порядке:
+-- первая страница и страницы по курсору читаются из индекса без сортировки таблицы.
+create index ticket_date_created_id_idx on ticket (date_created desc, id desc);
+
+create index ticket_last_activity_id_idx on ticket (last_activity desc, id desc);
+
+create index ticket_comment_count_id_idx on ticket (comment_count desc, id desc);
+
+create table ticket_comment (
+    id integer not null,
+    comment varchar,
+    date_created timestamp,
+    ticket_id integer,
+    primary key (id)
+);
+
+-- Индекс создаётся до внешнего ключа, чтобы внешний ключ использовал его вместо отдельного индекса по ticket_id.
+create index ticket_comment_ticket_id_date_created_idx on ticket_comment (ticket_id, date_created);
+
+alter table ticket_comment add constraint ticket_comment_ticket_id_fk foreign key (ticket_id) references ticket;
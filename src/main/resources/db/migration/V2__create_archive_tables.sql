@@ -0,0 +1,43 @@
+/* 
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+-- Архив заявок: заявки без активности переносятся сюда вместе с комментариями, чтобы рабочие таблицы оставались
+-- небольшими. Идентификаторы сохраняются, поэтому архивная заявка открывается по прежнему адресу.
+create table ticket_archive (
+    id integer not null,
+    issue varchar(255) not null,
+    issue_details varchar,
+    date_created timestamp not null,
+    date_modified timestamp not null,
+    comment_count integer not null,
+    last_activity timestamp not null,
+    date_archived timestamp not null,
+    primary key (id)
+);
+
+create index ticket_archive_date_created_id_idx on ticket_archive (date_created desc, id desc);
+
+create table ticket_comment_archive (
+    id integer not null,
+    comment varchar,
+    date_created timestamp,
+    ticket_id integer not null,
+    primary key (id)
+);
+
+create index ticket_comment_archive_ticket_id_date_created_idx on ticket_comment_archive (ticket_id, date_created);
+
+alter table ticket_comment_archive add constraint ticket_comment_archive_ticket_id_fk foreign key (ticket_id)
+    references ticket_archive;
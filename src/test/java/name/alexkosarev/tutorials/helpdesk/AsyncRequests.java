@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk;
+
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+
+/**
+ * Выполнение запросов в интеграционных тестах с учётом асинхронных обработчиков.
+ *
+ * @author Alexander Kosarev
+ */
+public final class AsyncRequests {
+
+    private AsyncRequests() {
+    }
+
+    /**
+     * Выполнение запроса и, если обработчик начал асинхронную обработку, асинхронной диспетчеризации с её результатом.
+     *
+     * В отличие от контейнера сервлетов MockMvc выполняет асинхронную диспетчеризацию с новым ответом, поэтому
+     * статус и заголовки, выставленные до неё (например, 304 и ETag), переносятся в ответ диспетчеризации.
+     *
+     * @param mockMvc MockMvc
+     * @param requestBuilder запрос
+     * @return результат запроса или асинхронной диспетчеризации
+     * @throws Exception в случае ошибки выполнения запроса
+     */
+    public static ResultActions performAndDispatch(MockMvc mockMvc, RequestBuilder requestBuilder) throws Exception {
+        ResultActions resultActions = mockMvc.perform(requestBuilder);
+        MvcResult result = resultActions.andReturn();
+
+        if (!result.getRequest().isAsyncStarted()) {
+            return resultActions;
+        }
+
+        ResultActions dispatchActions = mockMvc.perform(asyncDispatch(result));
+        MockHttpServletResponse response = dispatchActions.andReturn().getResponse();
+        if (result.getResponse().getStatus() != HttpServletResponse.SC_OK) {
+            response.setStatus(result.getResponse().getStatus());
+        }
+        for (String name : result.getResponse().getHeaderNames()) {
+            if (!response.containsHeader(name)) {
+                result.getResponse().getHeaders(name).forEach(value -> response.addHeader(name, value));
+            }
+        }
+        return dispatchActions;
+    }
+}
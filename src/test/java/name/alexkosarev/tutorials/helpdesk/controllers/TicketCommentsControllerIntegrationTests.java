@@ -15,11 +15,21 @@
  */
 package name.alexkosarev.tutorials.helpdesk.controllers;
 
+import java.util.Date;
+import static name.alexkosarev.tutorials.helpdesk.AsyncRequests.performAndDispatch;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.entities.TicketComment;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketCommentRepository;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -38,6 +48,12 @@ public class TicketCommentsControllerIntegrationTests {
 
     @Autowired
     private MockMvc mockMvc;
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    @Autowired
+    private TicketCommentRepository ticketCommentRepository;
     
     @Test
     public void createWhenTicketExistsAndFormIsValidShouldSaveTicketCommentAndReturnRedirection() throws Exception {
@@ -48,6 +64,67 @@ public class TicketCommentsControllerIntegrationTests {
                 .andExpect(redirectedUrl("/tickets/1"));
     }
     
+    /**
+     * Создание и удаление комментария заявки.
+     *
+     * Количество комментариев заявки должно увеличиваться при создании и уменьшаться при удалении комментария, дата
+     * последней активности должна обновляться.
+     */
+    @Test
+    public void createAndDeleteShouldMaintainTicketCommentCountAndLastActivity() throws Exception {
+        Ticket ticket = ticketRepository.findOne(4);
+        int commentCount = ticket.getCommentCount();
+        Date lastActivity = ticket.getLastActivity();
+
+        mockMvc.perform(post("/tickets/4/comments").param("comment", "Counted comment"))
+                .andExpect(redirectedUrl("/tickets/4"));
+
+        ticket = ticketRepository.findOne(4);
+        assertEquals(commentCount + 1, ticket.getCommentCount());
+        assertTrue(ticket.getLastActivity().compareTo(lastActivity) >= 0);
+
+        TicketComment comment = ticketCommentRepository.findAll(new Sort(Sort.Direction.DESC, "id")).iterator().next();
+        mockMvc.perform(post("/tickets/4/comments/{comment}/delete", comment.getId()))
+                .andExpect(redirectedUrl("/tickets/4"));
+
+        assertEquals(commentCount, ticketRepository.findOne(4).getCommentCount());
+    }
+
+    /**
+     * Создание комментария к заявке, комментарии которой уже закешированы.
+     *
+     * Новый комментарий должен отображаться на странице заявки сразу после создания.
+     */
+    @Test
+    public void createWhenTicketCommentsAreCachedShouldShowNewComment() throws Exception {
+        performAndDispatch(mockMvc, get("/tickets/2"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/tickets/2/comments").param("comment", "Freshly cached comment"))
+                .andExpect(redirectedUrl("/tickets/2"));
+
+        performAndDispatch(mockMvc, get("/tickets/2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Freshly cached comment")));
+    }
+
+    /**
+     * Поиск заявки по тексту нового комментария.
+     *
+     * Заявка должна находиться поиском по тексту комментария сразу после его создания.
+     */
+    @Test
+    public void createShouldMakeTicketSearchableByComment() throws Exception {
+        mockMvc.perform(post("/tickets/4/comments").param("comment", "Toner smudges every page"))
+                .andExpect(redirectedUrl("/tickets/4"));
+
+        performAndDispatch(mockMvc, get("/tickets/search").param("q", "smudges"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("/tickets/4")));
+    }
+
     @Test
     public void createWhenTicketExistsAndFormIsInvalidShouldDoNothingAndReturnModelAndViewWith400Status() throws Exception {
         mockMvc.perform(post("/tickets/1/comments"))
@@ -66,7 +143,7 @@ public class TicketCommentsControllerIntegrationTests {
     
     @Test
     public void deletePageWhenTicketAndCommentExistAndRelatedShouldReturnDeletePage() throws Exception {
-        mockMvc.perform(get("/tickets/1/comments/1/delete"))
+        performAndDispatch(mockMvc, get("/tickets/1/comments/1/delete"))
                 .andDo(print())
                 .andExpect(view().name("tickets/comments/delete"))
                 .andExpect(model().attributeExists("comment"))
@@ -75,21 +152,21 @@ public class TicketCommentsControllerIntegrationTests {
     
     @Test
     public void deletePageWhenTicketDoesNotExistShouldThrowException() throws Exception {
-        mockMvc.perform(get("/tickets/100500/comments/1/delete"))
+        performAndDispatch(mockMvc, get("/tickets/100500/comments/1/delete"))
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
     
     @Test
     public void deletePageWhenCommentDoesNotExistShouldThrowException() throws Exception {
-        mockMvc.perform(get("/tickets/1/comments/100500/delete"))
+        performAndDispatch(mockMvc, get("/tickets/1/comments/100500/delete"))
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
     
     @Test
     public void deletePageWhenTicketAndCommentNotRelatedShouldThrowException() throws Exception {
-        mockMvc.perform(get("/tickets/2/comments/1/delete"))
+        performAndDispatch(mockMvc, get("/tickets/2/comments/1/delete"))
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
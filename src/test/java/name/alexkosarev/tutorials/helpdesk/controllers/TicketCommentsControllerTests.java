@@ -18,21 +18,29 @@ package name.alexkosarev.tutorials.helpdesk.controllers;
 import java.util.Date;
 import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
 import name.alexkosarev.tutorials.helpdesk.entities.TicketComment;
+import name.alexkosarev.tutorials.helpdesk.events.TicketChangeEvent;
 import name.alexkosarev.tutorials.helpdesk.exceptions.EntityNotFoundException;
+import name.alexkosarev.tutorials.helpdesk.exceptions.TicketCommentQueueRejectedException;
 import name.alexkosarev.tutorials.helpdesk.forms.TicketCommentForm;
-import name.alexkosarev.tutorials.helpdesk.repositories.TicketCommentRepository;
+import name.alexkosarev.tutorials.helpdesk.services.TicketCommentService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketSearchService;
+import name.alexkosarev.tutorials.helpdesk.writebehind.TicketCommentWriteBehindQueue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.notNull;
 import org.mockito.Mock;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.MockitoAnnotations.initMocks;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import static org.springframework.test.web.ModelAndViewAssert.assertAndReturnModelAttributeOfType;
 import static org.springframework.test.web.ModelAndViewAssert.assertViewName;
@@ -50,7 +58,16 @@ public class TicketCommentsControllerTests {
     public ExpectedException expectedException = ExpectedException.none();
 
     @Mock
-    private TicketCommentRepository repository;
+    private TicketCommentService ticketCommentService;
+
+    @Mock
+    private TicketSearchService ticketSearchService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TicketCommentWriteBehindQueue writeBehindQueue;
 
     private TicketCommentsController controller;
 
@@ -58,25 +75,73 @@ public class TicketCommentsControllerTests {
     public void setUp() {
         initMocks(this);
 
-        controller = new TicketCommentsController(repository);
+        controller = new TicketCommentsController(ticketCommentService, ticketSearchService, eventPublisher,
+                writeBehindQueue);
     }
 
     @Test
-    public void createWhenTicketExistsAndFormIsValidShouldSaveCommentAndReturnRedirection() throws EntityNotFoundException {
+    public void createWhenTicketExistsAndFormIsValidShouldSaveCommentAndReturnRedirection() throws EntityNotFoundException,
+            TicketCommentQueueRejectedException {
         BindingResult bindingResult = mock(BindingResult.class);
         doReturn(false).when(bindingResult)
                 .hasErrors();
 
-        ModelAndView create = controller.create(new TicketCommentForm(), bindingResult, new Ticket());
+        Ticket ticket = new Ticket();
+        doAnswer(invocation -> invocation.getArguments()[0]).when(ticketCommentService)
+                .create(notNull(TicketComment.class));
+        ModelAndView create = controller.create(new TicketCommentForm(), bindingResult, ticket);
 
         verify(bindingResult).hasErrors();
-        verify(repository).save(notNull(TicketComment.class));
+        verify(ticketCommentService).create(notNull(TicketComment.class));
+        verify(ticketSearchService).index(ticket);
+        verify(eventPublisher).publishEvent(notNull(TicketChangeEvent.class));
+
+        assertViewName(create, "redirect:/tickets/0");
+    }
+
+    @Test
+    public void createWhenWriteBehindQueueAcceptsCommentShouldNotSaveCommentSynchronously() throws EntityNotFoundException,
+            TicketCommentQueueRejectedException {
+        BindingResult bindingResult = mock(BindingResult.class);
+        doReturn(false).when(bindingResult)
+                .hasErrors();
+        doReturn(true).when(writeBehindQueue)
+                .isEnabled();
+        doReturn(true).when(writeBehindQueue)
+                .offer(notNull(TicketComment.class));
+
+        ModelAndView create = controller.create(new TicketCommentForm("Comment"), bindingResult, new Ticket());
+
+        verify(writeBehindQueue).offer(notNull(TicketComment.class));
+        verify(ticketCommentService, never()).create(any(TicketComment.class));
+        verify(eventPublisher, never()).publishEvent(any(TicketChangeEvent.class));
 
         assertViewName(create, "redirect:/tickets/0");
     }
 
     @Test
-    public void createWhenTicketExistsAndFormIsInvalidShouldDoNothingAndReturnModelAndViewWith400Status() throws EntityNotFoundException {
+    public void createWhenWriteBehindQueueRejectsCommentShouldThrowExceptionAndNotSaveCommentSynchronously()
+            throws EntityNotFoundException, TicketCommentQueueRejectedException {
+        BindingResult bindingResult = mock(BindingResult.class);
+        doReturn(false).when(bindingResult)
+                .hasErrors();
+        doReturn(true).when(writeBehindQueue)
+                .isEnabled();
+        doReturn(false).when(writeBehindQueue)
+                .offer(notNull(TicketComment.class));
+
+        try {
+            controller.create(new TicketCommentForm("Comment"), bindingResult, new Ticket());
+            fail("TicketCommentQueueRejectedException is expected");
+        } catch (TicketCommentQueueRejectedException e) {
+            verify(ticketCommentService, never()).create(any(TicketComment.class));
+            verify(eventPublisher, never()).publishEvent(any(TicketChangeEvent.class));
+        }
+    }
+
+    @Test
+    public void createWhenTicketExistsAndFormIsInvalidShouldDoNothingAndReturnModelAndViewWith400Status() throws EntityNotFoundException,
+            TicketCommentQueueRejectedException {
         BindingResult bindingResult = mock(BindingResult.class);
         doReturn(true).when(bindingResult)
                 .hasErrors();
@@ -84,13 +149,14 @@ public class TicketCommentsControllerTests {
         ModelAndView create = controller.create(new TicketCommentForm(), bindingResult, new Ticket());
 
         verify(bindingResult).hasErrors();
-        verify(repository, never()).save(notNull(TicketComment.class));
+        verify(ticketCommentService, never()).create(notNull(TicketComment.class));
 
         assertEquals(HttpStatus.BAD_REQUEST, create.getStatus());
     }
 
     @Test
-    public void createWhenTicketDoesNotExistsShouldThrowException() throws EntityNotFoundException {
+    public void createWhenTicketDoesNotExistsShouldThrowException() throws EntityNotFoundException,
+            TicketCommentQueueRejectedException {
         expectedException.expect(EntityNotFoundException.class);
 
         controller.create(new TicketCommentForm(), null, null);
@@ -129,9 +195,11 @@ public class TicketCommentsControllerTests {
     @Test
     public void deleteWhenTicketAndCommentExistShouldDeleteCommentAndReturnRedirection() throws EntityNotFoundException {
         Ticket ticket = new Ticket();
-        ModelAndView deletePage = controller.delete(ticket, new TicketComment(0, "", new Date(), ticket));
+        TicketComment comment = new TicketComment(0, "", new Date(), ticket);
+        ModelAndView deletePage = controller.delete(ticket, comment);
 
-        verify(repository).delete(notNull(TicketComment.class));
+        verify(ticketCommentService).delete(comment);
+        verify(ticketSearchService).index(ticket);
 
         assertViewName(deletePage, "redirect:/tickets/0");
     }
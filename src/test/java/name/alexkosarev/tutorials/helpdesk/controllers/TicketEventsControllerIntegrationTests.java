@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.controllers;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Интеграционные тесты для тестирования {@link TicketEventsController}
+ *
+ * @author Alexander Kosarev
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TicketEventsControllerIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Подписка на изменения одной заявки.
+     *
+     * Подписчик должен получить событие о комментарии к своей заявке и не должен получать события о других заявках.
+     */
+    @Test
+    public void ticketEventsShouldStreamCommentsOfSubscribedTicketOnly() throws Exception {
+        MockHttpServletResponse events = mockMvc.perform(get("/tickets/2/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+
+        mockMvc.perform(post("/tickets/1/comments").param("comment", "Comment for another ticket"))
+                .andExpect(redirectedUrl("/tickets/1"));
+        mockMvc.perform(post("/tickets/2/comments").param("comment", "Comment for subscribed ticket"))
+                .andExpect(redirectedUrl("/tickets/2"));
+
+        String content = awaitContent(events, "\"type\":\"COMMENT_CREATED\"");
+        assertThat(content, containsString("\"ticketId\":2"));
+        assertThat(content, not(containsString("\"ticketId\":1")));
+    }
+
+    /**
+     * Подписка на изменения всех заявок.
+     *
+     * Подписчик должен получить событие об изменённой заявке.
+     */
+    @Test
+    public void eventsShouldStreamUpdatedTickets() throws Exception {
+        MockHttpServletResponse events = mockMvc.perform(get("/tickets/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+
+        mockMvc.perform(post("/tickets/4/edit").param("issue", "Ticket #4 issue")
+                .param("issueDetails", "Ticket #4 issue description"))
+                .andExpect(redirectedUrl("/tickets/4"));
+
+        assertThat(awaitContent(events, "\"type\":\"TICKET_UPDATED\""), containsString("\"issue\":\"Ticket #4 issue\""));
+    }
+
+    /**
+     * Подписка на изменения всех заявок во время импорта.
+     *
+     * Подписчик должен получить событие о каждой импортированной заявке.
+     */
+    @Test
+    public void eventsShouldStreamImportedTickets() throws Exception {
+        MockHttpServletResponse events = mockMvc.perform(get("/tickets/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+
+        mockMvc.perform(post("/tickets/import").contentType("text/csv").content("issue\nImported streamed issue\n"))
+                .andExpect(status().isOk());
+
+        assertThat(awaitContent(events, "\"type\":\"TICKET_CREATED\""),
+                containsString("\"issue\":\"Imported streamed issue\""));
+    }
+
+    /**
+     * Подписка на изменения всех заявок во время массового удаления.
+     *
+     * Подписчик должен получить событие об удалённой заявке и не должен получать события о несуществующих заявках.
+     */
+    @Test
+    public void eventsShouldStreamOnlyActuallyDeletedTickets() throws Exception {
+        String location = mockMvc.perform(post("/api/tickets")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"issue\":\"Deleted streamed issue\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+        String id = location.substring(location.lastIndexOf('/') + 1);
+
+        MockHttpServletResponse events = mockMvc.perform(get("/tickets/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+
+        mockMvc.perform(delete("/api/tickets").param("id", id).param("id", "999999"))
+                .andExpect(status().isNoContent());
+
+        String content = awaitContent(events, "\"ticketId\":" + id);
+        assertThat(content, containsString("\"type\":\"TICKET_DELETED\""));
+        assertThat(content, not(containsString("\"ticketId\":999999")));
+    }
+
+    private static String awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        for (int i = 0; i < 50 && !response.getContentAsString().contains(expected); i++) {
+            Thread.sleep(100);
+        }
+
+        assertThat(response.getContentAsString(), containsString(expected));
+        return response.getContentAsString();
+    }
+}
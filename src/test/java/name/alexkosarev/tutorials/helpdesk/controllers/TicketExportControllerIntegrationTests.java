@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.controllers;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Интеграционные тесты для тестирования {@link TicketExportController}
+ *
+ * @author Alexander Kosarev
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TicketExportControllerIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Выгрузка заявок в CSV.
+     *
+     * Должна быть возвращена строка заголовка и строки заявок с комментариями.
+     */
+    @Test
+    public void exportCsvShouldReturnTicketsWithComments() throws Exception {
+        mockMvc.perform(get("/tickets/export"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("tickets.csv")))
+                .andExpect(content().string(startsWith("id,issue,issueDetails,dateCreated,commentId,comment,commentDateCreated\r\n")))
+                .andExpect(content().string(containsString("1,Ticket #1 issue,Ticket #1 issue description,")))
+                .andExpect(content().string(containsString(",1,Ticket #1 comment #1,")));
+    }
+
+    /**
+     * Выгрузка заявок в JSON Lines.
+     *
+     * Каждая заявка должна быть выгружена отдельной строкой вместе с комментариями.
+     */
+    @Test
+    public void exportJsonLinesShouldReturnTicketsWithInlineComments() throws Exception {
+        mockMvc.perform(get("/tickets/export").param("format", "jsonl"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string(startsWith("{\"id\":1,\"issue\":\"Ticket #1 issue\"")))
+                .andExpect(content().string(containsString("\"comments\":[{\"id\":1,\"comment\":\"Ticket #1 comment #1\"")))
+                .andExpect(content().string(containsString("}\n{\"id\":")));
+    }
+
+    /**
+     * Выгрузка заявок клиенту, принимающему gzip.
+     *
+     * Ответ должен быть сжат.
+     */
+    @Test
+    public void exportWhenGzipIsAcceptedShouldCompressResponse() throws Exception {
+        byte[] body = mockMvc.perform(get("/tickets/export").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        String csv = StreamUtils.copyToString(new GZIPInputStream(new ByteArrayInputStream(body)),
+                StandardCharsets.UTF_8);
+        assertThat(csv, containsString("Ticket #1 comment #1"));
+    }
+
+    /**
+     * Выгрузка заявок в неизвестном формате.
+     *
+     * Должен быть возвращён ответ 400 Bad Request.
+     */
+    @Test
+    public void exportWhenFormatIsUnknownShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/tickets/export").param("format", "xlsx"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+}
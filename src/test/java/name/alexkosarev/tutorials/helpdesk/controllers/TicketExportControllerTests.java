@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import name.alexkosarev.tutorials.helpdesk.exceptions.TicketExportRejectedException;
+import name.alexkosarev.tutorials.helpdesk.exports.TicketExportWriter;
+import name.alexkosarev.tutorials.helpdesk.services.TicketExportService;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Matchers.any;
+import org.mockito.Mock;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Модульные тесты для тестирования {@link TicketExportController}
+ *
+ * @author Alexander Kosarev
+ */
+public class TicketExportControllerTests {
+
+    @Mock
+    private TicketExportService service;
+
+    private TicketExportController controller;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        controller = new TicketExportController(service, new ObjectMapper(), 1);
+    }
+
+    /**
+     * Выгрузка заявок во время другой выгрузки при ограничении в одну выгрузку.
+     *
+     * Вторая выгрузка должна быть отклонена, а после завершения первой выгрузки новая выгрузка должна выполняться.
+     */
+    @Test
+    public void exportCsvWhenExportsLimitReachedShouldThrowTicketExportRejectedException() throws Exception {
+        doAnswer(invocation -> {
+            try {
+                controller.exportJsonLines(null, new MockHttpServletResponse());
+                fail("TicketExportRejectedException expected");
+            } catch (TicketExportRejectedException e) {
+            }
+            return null;
+        }).when(service)
+                .export(any(TicketExportWriter.class));
+
+        controller.exportCsv(null, new MockHttpServletResponse());
+
+        doAnswer(invocation -> null).when(service)
+                .export(any(TicketExportWriter.class));
+        controller.exportCsv(null, new MockHttpServletResponse());
+
+        verify(service, times(2)).export(any(TicketExportWriter.class));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.controllers;
+
+import javax.persistence.EntityManagerFactory;
+import static name.alexkosarev.tutorials.helpdesk.AsyncRequests.performAndDispatch;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertTrue;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Интеграционные тесты для тестирования {@link TicketImportController}
+ *
+ * @author Alexander Kosarev
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TicketImportControllerIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Импорт заявок из CSV, содержащего невалидную строку.
+     *
+     * Валидные строки должны быть импортированы, для невалидной строки должна быть возвращена ошибка с её номером.
+     */
+    @Test
+    public void importCsvWhenRowIsInvalidShouldImportOtherRowsAndReportError() throws Exception {
+        String csv = "issue,issueDetails\n"
+                + "Imported CSV monitor issue,Flickers\n"
+                + ",Blank issue\n"
+                + "\"Imported CSV keyboard issue, sticky keys\",\"Multi\nline\"\n";
+
+        mockMvc.perform(post("/tickets/import").contentType("text/csv").content(csv))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.errorCount").value(1))
+                .andExpect(jsonPath("$.errors.length()").value(1))
+                .andExpect(jsonPath("$.errors[0].row").value(2))
+                .andExpect(jsonPath("$.errors[0].messages[0]").value("Issue couldn't be blank"));
+
+        performAndDispatch(mockMvc, get("/tickets/search").param("q", "sticky"))
+                .andExpect(content().string(containsString("Imported CSV keyboard issue, sticky keys")));
+    }
+
+    /**
+     * Импорт заявок из CSV без колонки issue.
+     *
+     * Ни одна заявка не должна быть импортирована, должна быть возвращена ошибка заголовка.
+     */
+    @Test
+    public void importCsvWhenHeaderIsInvalidShouldReportError() throws Exception {
+        mockMvc.perform(post("/tickets/import").contentType("text/csv").content("title\nSomething\n"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(0))
+                .andExpect(jsonPath("$.errors[0].row").value(0));
+    }
+
+    /**
+     * Импорт заявок из JSON Lines, содержащего неразбираемую строку.
+     *
+     * Разбираемые строки должны быть импортированы, для неразбираемой строки должна быть возвращена ошибка.
+     */
+    @Test
+    public void importJsonLinesWhenRowIsMalformedShouldImportOtherRowsAndReportError() throws Exception {
+        String jsonLines = "{\"issue\": \"Imported JSON issue\", \"issueDetails\": \"Details\"}\n"
+                + "{\"issue\": \n"
+                + "\n"
+                + "{\"issue\": \"Another imported JSON issue\"}\n";
+
+        mockMvc.perform(post("/tickets/import").contentType("application/x-ndjson").content(jsonLines))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.errors.length()").value(1))
+                .andExpect(jsonPath("$.errors[0].row").value(2));
+    }
+
+    /**
+     * Импорт большого количества заявок.
+     *
+     * Заявки должны вставляться пакетами JDBC, а идентификаторы выделяться блоками, поэтому количество подготовленных
+     * SQL-запросов должно быть значительно меньше количества заявок.
+     */
+    @Test
+    public void importCsvShouldInsertTicketsInJdbcBatches() throws Exception {
+        StringBuilder csv = new StringBuilder("issue\n");
+        for (int i = 0; i < 200; i++) {
+            csv.append("Batched issue #").append(i).append('\n');
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long statementCount = statistics.getPrepareStatementCount();
+
+        mockMvc.perform(post("/tickets/import").contentType("text/csv").content(csv.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(200));
+
+        assertTrue(statistics.getPrepareStatementCount() - statementCount < 20);
+    }
+
+    /**
+     * Импорт заявок из JSON Lines с количеством невалидных строк больше ограничения.
+     *
+     * Отчёт должен содержать не больше заданного количества ошибок и общее количество строк с ошибками.
+     */
+    @Test
+    public void importJsonLinesWhenErrorsExceedLimitShouldCapReportedErrors() throws Exception {
+        StringBuilder jsonLines = new StringBuilder();
+        for (int i = 0; i < 150; i++) {
+            jsonLines.append("{\"issue\":\"\"}\n");
+        }
+
+        mockMvc.perform(post("/tickets/import").contentType("application/x-ndjson").content(jsonLines.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(0))
+                .andExpect(jsonPath("$.errorCount").value(150))
+                .andExpect(jsonPath("$.errors.length()").value(100));
+    }
+}
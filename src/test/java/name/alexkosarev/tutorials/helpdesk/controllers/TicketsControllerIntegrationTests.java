@@ -15,14 +15,37 @@
  */
 package name.alexkosarev.tutorials.helpdesk.controllers;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManagerFactory;
+import static name.alexkosarev.tutorials.helpdesk.AsyncRequests.performAndDispatch;
 import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.pagination.CursorSlice;
 import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import name.alexkosarev.tutorials.helpdesk.services.TicketArchiveService;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.isEmptyOrNullString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -45,6 +68,15 @@ public class TicketsControllerIntegrationTests {
     @Autowired
     private TicketRepository ticketRepository;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TicketArchiveService ticketArchiveService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     /**
      * Просмотр списка заявок.
      *
@@ -52,7 +84,7 @@ public class TicketsControllerIntegrationTests {
      */
     @Test
     public void indexShouldReturnTicketsPage() throws Exception {
-        mockMvc.perform(get("/tickets"))
+        performAndDispatch(mockMvc, get("/tickets"))
                 .andDo(print())
                 .andExpect(model().attributeExists("page"))
                 .andExpect(view().name("tickets/index"))
@@ -60,6 +92,78 @@ public class TicketsControllerIntegrationTests {
                 .andExpect(xpath(".//a[@href='/tickets/create']").exists());
     }
 
+    /**
+     * Просмотр первой страницы списка заявок.
+     *
+     * На странице должна быть ссылка на следующую страницу и не должно быть ссылки на предыдущую.
+     */
+    @Test
+    public void indexShouldReturnTicketsPageWithNextPageLink() throws Exception {
+        performAndDispatch(mockMvc, get("/tickets").param("page", "0").param("size", "1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(xpath(".//ul[@class='pager']/li[@class='previous']").doesNotExist())
+                .andExpect(xpath(".//ul[@class='pager']/li[@class='next']/a[@href='/tickets?page=1&size=1']").exists());
+    }
+
+    /**
+     * Просмотр списка заявок, упорядоченного по количеству комментариев.
+     *
+     * Заявки должны быть упорядочены по убыванию количества комментариев, ссылка на следующую страницу должна
+     * сохранять порядок.
+     */
+    @Test
+    public void indexSortedByCommentCountShouldReturnMostCommentedTicketsFirst() throws Exception {
+        Slice<?> page = (Slice<?>) performAndDispatch(mockMvc, get("/tickets").param("size", "2")
+                .param("sort", "commentCount,desc"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(xpath(".//ul[@class='pager']/li[@class='next']/a[@href='/tickets?page=1&size=2&sort=commentCount,desc']").exists())
+                .andReturn()
+                .getModelAndView().getModel().get("page");
+
+        Ticket first = (Ticket) page.getContent().get(0);
+        Ticket second = (Ticket) page.getContent().get(1);
+        assertTrue(first.getCommentCount() >= second.getCommentCount());
+        assertTrue(first.getCommentCount() > 0);
+    }
+
+    /**
+     * Просмотр списка заявок по курсору.
+     *
+     * Первая страница должна содержать ссылку на следующую страницу и не содержать ссылки на предыдущую, переход по
+     * ссылке должен вернуть следующую страницу со ссылкой на предыдущую.
+     */
+    @Test
+    public void indexByCursorShouldReturnTicketsPageWithCursorLinks() throws Exception {
+        CursorSlice<?> firstPage = (CursorSlice<?>) performAndDispatch(mockMvc, get("/tickets").param("cursor", "").param("size", "1"))
+                .andDo(print())
+                .andExpect(model().attributeExists("page"))
+                .andExpect(view().name("tickets/index"))
+                .andExpect(status().isOk())
+                .andExpect(xpath(".//ul[@class='pager']/li[@class='previous']").doesNotExist())
+                .andExpect(xpath(".//ul[@class='pager']/li[@class='next']/a").exists())
+                .andReturn()
+                .getModelAndView().getModel().get("page");
+
+        performAndDispatch(mockMvc, get("/tickets").param("cursor", firstPage.getNextCursor()).param("size", "1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(xpath(".//ul[@class='pager']/li[@class='previous']/a").exists());
+    }
+
+    /**
+     * Просмотр списка заявок по некорректному курсору.
+     *
+     * Должен быть возвращён ответ со статусом 400 Bad Request.
+     */
+    @Test
+    public void indexByCursorWhenCursorIsInvalidShouldReturn400Status() throws Exception {
+        performAndDispatch(mockMvc, get("/tickets").param("cursor", "???"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
     /**
      * Просмотр заявки, оптимистичный сценарий.
      *
@@ -68,7 +172,7 @@ public class TicketsControllerIntegrationTests {
      */
     @Test
     public void viewWhenTicketExistsShouldShowTicketPage() throws Exception {
-        mockMvc.perform(get("/tickets/1"))
+        performAndDispatch(mockMvc, get("/tickets/1"))
                 .andDo(print())
                 .andExpect(model().attributeExists("ticket"))
                 .andExpect(view().name("tickets/viewOne"))
@@ -78,6 +182,197 @@ public class TicketsControllerIntegrationTests {
                 .andExpect(xpath(".//a[@href='/tickets/1/delete']").exists());
     }
 
+    /**
+     * Просмотр заявки при пустом кеше.
+     *
+     * Должно быть выполнено ровно два SQL-запроса: получение заявки и получение комментариев без повторной выборки
+     * заявки.
+     */
+    @Test
+    public void viewWhenCacheIsEmptyShouldExecuteTwoStatements() throws Exception {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAllRegions();
+        long statementCount = sessionFactory.getStatistics().getPrepareStatementCount();
+
+        performAndDispatch(mockMvc, get("/tickets/1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(xpath(".//div[contains(@class, 'well')]").exists());
+
+        assertEquals(2, sessionFactory.getStatistics().getPrepareStatementCount() - statementCount);
+    }
+
+    /**
+     * Повторный просмотр заявки.
+     *
+     * Заявка и комментарии должны быть получены из кеша второго уровня и кеша запросов, статистика кеша должна быть
+     * доступна через /metrics.
+     */
+    @Test
+    public void viewWhenTicketWasViewedShouldUseSecondLevelCache() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        performAndDispatch(mockMvc, get("/tickets/4"))
+                .andExpect(status().isOk());
+        long hitCount = statistics.getSecondLevelCacheHitCount();
+        long queryHitCount = statistics.getQueryCacheHitCount();
+
+        performAndDispatch(mockMvc, get("/tickets/4"))
+                .andExpect(status().isOk());
+
+        assertTrue(statistics.getSecondLevelCacheHitCount() > hitCount);
+        assertTrue(statistics.getQueryCacheHitCount() > queryHitCount);
+
+        mockMvc.perform(get("/metrics").header(HttpHeaders.AUTHORIZATION, "Bearer test-scrape-token"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['hibernate.cache.hit']").isNumber())
+                .andExpect(jsonPath("$['hibernate.cache.query.hit']").isNumber());
+    }
+
+    /**
+     * Повторный просмотр заявки с ETag из предыдущего ответа.
+     *
+     * Пока заявка не изменилась, должен возвращаться ответ 304 Not Modified без запроса комментариев, после добавления
+     * комментария страница должна быть отображена заново.
+     */
+    @Test
+    public void viewWhenClientCopyIsCurrentShouldReturn304UntilCommentIsAdded() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String etag = performAndDispatch(mockMvc, get("/tickets/4"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LAST_MODIFIED, not(isEmptyOrNullString())))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        long statementCount = statistics.getPrepareStatementCount();
+
+        performAndDispatch(mockMvc, get("/tickets/4").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andDo(print())
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        assertTrue(statistics.getPrepareStatementCount() - statementCount <= 1);
+
+        mockMvc.perform(post("/tickets/4/comments")
+                .param("comment", "Ticket #4 comment"))
+                .andExpect(status().is3xxRedirection());
+
+        performAndDispatch(mockMvc, get("/tickets/4").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Ticket #4 comment")));
+    }
+
+    /**
+     * Повторный просмотр списка заявок с ETag из предыдущего ответа.
+     *
+     * Должен быть возвращён ответ 304 Not Modified.
+     */
+    @Test
+    public void indexWhenClientCopyIsCurrentShouldReturn304() throws Exception {
+        String etag = performAndDispatch(mockMvc, get("/tickets").param("size", "2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        performAndDispatch(mockMvc, get("/tickets").param("size", "2").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andDo(print())
+                .andExpect(status().isNotModified());
+    }
+
+    /**
+     * Повторный просмотр списка заявок с пейджинацией по курсору с ETag из предыдущего ответа.
+     *
+     * Должен быть возвращён ответ 304 Not Modified с тем же ETag и без тела.
+     */
+    @Test
+    public void indexByCursorWhenClientCopyIsCurrentShouldReturn304() throws Exception {
+        String etag = performAndDispatch(mockMvc, get("/tickets").param("cursor", "").param("size", "2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        performAndDispatch(mockMvc, get("/tickets").param("cursor", "").param("size", "2")
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+    }
+
+    /**
+     * Статистика обращений к базе данных при отображении списка заявок.
+     *
+     * Количество SQL-запросов, время их выполнения и количество прочитанных строк должны быть доступны через /metrics
+     * в виде гистограмм обработчика.
+     */
+    @Test
+    public void indexShouldRecordJdbcStatistics() throws Exception {
+        performAndDispatch(mockMvc, get("/tickets"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/metrics").header(HttpHeaders.AUTHORIZATION, "Bearer test-scrape-token"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['histogram.jdbc.TicketsController.index.statements.snapshot.max']").value(1))
+                .andExpect(jsonPath("$['histogram.jdbc.TicketsController.index.micros.count']").isNumber())
+                .andExpect(jsonPath("$['histogram.jdbc.TicketsController.index.rows.snapshot.max']").isNumber());
+    }
+
+    /**
+     * Поиск созданной заявки.
+     *
+     * Заявка должна находиться поиском сразу после создания.
+     */
+    @Test
+    public void searchWhenTicketWasCreatedShouldFindTicket() throws Exception {
+        mockMvc.perform(post("/tickets/create").param("issue", "Scanner paperjam").param("issueDetails", "Urgent"))
+                .andExpect(status().is3xxRedirection());
+
+        performAndDispatch(mockMvc, get("/tickets/search").param("q", "paperjam"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(view().name("tickets/search"))
+                .andExpect(content().string(containsString("Scanner paperjam")));
+    }
+
+    /**
+     * Поиск заявок со страницей за пределами окна результатов.
+     *
+     * Должен быть возвращён ответ 400 Bad Request.
+     */
+    @Test
+    public void searchWhenPageExceedsResultWindowShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/tickets/search").param("q", "printer").param("page", "1000000").param("size", "20"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Просмотр заявки, перенесённой в архив.
+     *
+     * Заявка должна отображаться из архива вместе с комментариями по прежнему адресу и находиться поиском по архиву.
+     */
+    @Test
+    public void viewWhenTicketWasArchivedShouldShowArchivedTicketPage() throws Exception {
+        String location = mockMvc.perform(post("/tickets/create").param("issue", "Forgotten printer issue"))
+                .andExpect(status().is3xxRedirection())
+                .andReturn().getResponse().getRedirectedUrl();
+        mockMvc.perform(post(location + "/comments").param("comment", "Forgotten printer comment"))
+                .andExpect(redirectedUrl(location));
+        int id = Integer.parseInt(location.substring(location.lastIndexOf('/') + 1));
+        jdbcTemplate.update("update ticket set last_activity = dateadd('YEAR', -2, now()) where id = ?", id);
+
+        assertEquals(1, ticketArchiveService.archive());
+
+        assertFalse(ticketRepository.exists(id));
+        performAndDispatch(mockMvc, get(location))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(view().name("tickets/archived"))
+                .andExpect(content().string(containsString("Forgotten printer issue")))
+                .andExpect(content().string(containsString("Forgotten printer comment")));
+        performAndDispatch(mockMvc, get("/tickets/archive").param("q", "forgotten printer"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("tickets/archive"))
+                .andExpect(content().string(containsString(location)));
+    }
+
     /**
      * Просмотр заявки, если заявка не существует.
      *
@@ -85,14 +380,14 @@ public class TicketsControllerIntegrationTests {
      */
     @Test
     public void viewWhenTicketDoesNotExistShouldReturn404Status() throws Exception {
-        mockMvc.perform(get("/tickets/100500"))
+        performAndDispatch(mockMvc, get("/tickets/100500"))
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
 
     @Test
     public void createPageShouldReturnCreatePage() throws Exception {
-        mockMvc.perform(get("/tickets/create"))
+        performAndDispatch(mockMvc, get("/tickets/create"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(xpath(".//form[@method='post' and @action='/tickets/create']//*[@name='issue']").exists())
@@ -143,13 +438,14 @@ public class TicketsControllerIntegrationTests {
     public void editPageWhenTicketExistsShouldReturnModelAndView() throws Exception {
         Ticket ticket = ticketRepository.findOne(1);
 
-        mockMvc.perform(get("/tickets/1/edit"))
+        performAndDispatch(mockMvc, get("/tickets/1/edit"))
                 .andDo(print())
                 .andExpect(model().attributeExists("ticket"))
                 .andExpect(view().name("tickets/edit"))
                 .andExpect(status().isOk())
                 .andExpect(xpath(".//form[@method='post' and @action='/tickets/1/edit']//*[@name='issue']/@value").string(ticket.getIssue()))
                 .andExpect(xpath(".//form[@method='post' and @action='/tickets/1/edit']//*[@name='issueDetails']").string(ticket.getIssueDetails()))
+                .andExpect(xpath(".//form[@method='post' and @action='/tickets/1/edit']//*[@name='version']/@value").string(String.valueOf(ticket.getVersion())))
                 .andExpect(xpath(".//form[@method='post' and @action='/tickets/1/edit']//*[@type='submit']").exists())
                 .andExpect(xpath(".//a[@href='/tickets']").exists())
                 .andExpect(xpath(".//a[@href='/tickets/1']").exists());
@@ -163,7 +459,7 @@ public class TicketsControllerIntegrationTests {
      */
     @Test
     public void editPageWhenTicketDoesNotExistShouldThrowException() throws Exception {
-        mockMvc.perform(get("/tickets/100500/edit"))
+        performAndDispatch(mockMvc, get("/tickets/100500/edit"))
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
@@ -200,6 +496,78 @@ public class TicketsControllerIntegrationTests {
                 .andExpect(xpath(".//form[@method='post' and @action='/tickets/2/edit']//*[@name='issueDetails']").string("Some edited issue description"));
     }
 
+    /**
+     * Сохранение изменений в заявке, если заявка изменена после открытия формы.
+     *
+     * Если форма отправлена для устаревшей версии заявки, изменения не должны быть сохранены, должна быть возвращена
+     * страница конфликта со статусом 409 Conflict, содержащая текущую и отправленную версии заявки и форму с актуальной
+     * версией для повторной отправки.
+     */
+    @Test
+    public void updateWhenVersionIsStaleShouldReturnConflictPage() throws Exception {
+        int version = ticketRepository.findOne(2).getVersion();
+
+        mockMvc.perform(post("/tickets/2/edit").param("issue", "First edit").param("issueDetails", "First edit description")
+                .param("version", String.valueOf(version)))
+                .andExpect(redirectedUrl("/tickets/2"));
+        mockMvc.perform(post("/tickets/2/edit").param("issue", "Second edit").param("issueDetails", "Second edit description")
+                .param("version", String.valueOf(version)))
+                .andDo(print())
+                .andExpect(status().isConflict())
+                .andExpect(view().name("tickets/conflict"))
+                .andExpect(model().attributeExists("ticket", "form"))
+                .andExpect(xpath(".//td[text()='First edit']").exists())
+                .andExpect(xpath(".//td[text()='Second edit']").exists())
+                .andExpect(xpath(".//form[@method='post' and @action='/tickets/2/edit']//*[@name='issue']/@value").string("Second edit"))
+                .andExpect(xpath(".//form[@method='post' and @action='/tickets/2/edit']//*[@name='version']/@value").string(String.valueOf(version + 1)));
+
+        assertEquals("First edit", ticketRepository.findOne(2).getIssue());
+    }
+
+    /**
+     * Одновременное сохранение изменений в заявке.
+     *
+     * Если несколько пользователей одновременно отправляют изменения одной версии заявки, должно быть сохранено ровно
+     * одно изменение, а остальные запросы должны завершиться конфликтом без потери сохранённых данных.
+     */
+    @Test
+    public void updateWhenEditedConcurrentlyShouldSaveOnlyOneEdit() throws Exception {
+        int threads = 8;
+        Ticket original = ticketRepository.findOne(2);
+        int version = original.getVersion();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                String issue = "Concurrent edit " + i;
+                statuses.add(executor.submit(() -> {
+                    start.await();
+                    return mockMvc.perform(post("/tickets/2/edit").param("issue", issue).param("issueDetails", issue)
+                            .param("version", String.valueOf(version)))
+                            .andReturn().getResponse().getStatus();
+                }));
+            }
+            start.countDown();
+
+            List<Integer> results = new ArrayList<>();
+            for (Future<Integer> status : statuses) {
+                results.add(status.get(30, TimeUnit.SECONDS));
+            }
+
+            assertEquals(1, Collections.frequency(results, HttpStatus.FOUND.value()));
+            assertEquals(threads - 1, Collections.frequency(results, HttpStatus.CONFLICT.value()));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Ticket ticket = ticketRepository.findOne(2);
+        assertEquals(version + 1, ticket.getVersion());
+        assertTrue(ticket.getIssue().startsWith("Concurrent edit "));
+        assertEquals(ticket.getIssue(), ticket.getIssueDetails());
+        assertEquals(original.getCommentCount(), ticket.getCommentCount());
+    }
+
     /**
      * Сохранение изменений в заявке, если заявка не существует.
      *
@@ -220,7 +588,7 @@ public class TicketsControllerIntegrationTests {
      */
     @Test
     public void deleteConfirmationPageWhenTicketExistsShouldReturnModelAndView() throws Exception {
-        mockMvc.perform(get("/tickets/1/delete"))
+        performAndDispatch(mockMvc, get("/tickets/1/delete"))
                 .andDo(print())
                 .andExpect(model().attributeExists("ticket"))
                 .andExpect(view().name("tickets/delete"))
@@ -237,7 +605,7 @@ public class TicketsControllerIntegrationTests {
      */
     @Test
     public void deleteConfirmationPageWhenTicketDoesNotExistShouldThrowException() throws Exception {
-        mockMvc.perform(get("/tickets/100500/delete"))
+        performAndDispatch(mockMvc, get("/tickets/100500/delete"))
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
@@ -258,6 +626,31 @@ public class TicketsControllerIntegrationTests {
         assertFalse(ticketRepository.exists(3));
     }
 
+    /**
+     * Удаление заявки с комментариями.
+     *
+     * Заявка должна быть удалена вместе с комментариями.
+     */
+    @Test
+    public void deleteWhenTicketHasCommentsShouldDeleteTicketWithComments() throws Exception {
+        String location = mockMvc.perform(post("/tickets/create").param("issue", "Ticket with comments to delete"))
+                .andExpect(status().is3xxRedirection())
+                .andReturn().getResponse().getRedirectedUrl();
+        mockMvc.perform(post(location + "/comments").param("comment", "Comment to delete"))
+                .andExpect(redirectedUrl(location));
+        mockMvc.perform(post(location + "/comments").param("comment", "Another comment to delete"))
+                .andExpect(redirectedUrl(location));
+
+        mockMvc.perform(post(location + "/delete"))
+                .andDo(print())
+                .andExpect(redirectedUrl("/tickets"));
+
+        assertFalse(ticketRepository.exists(Integer.valueOf(location.substring(location.lastIndexOf('/') + 1))));
+        performAndDispatch(mockMvc, get("/tickets/search").param("q", "\"Comment to delete\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string(not(containsString(location))));
+    }
+
     /**
      * Удаление несуществующей заявки.
      *
@@ -16,34 +16,63 @@
 package name.alexkosarev.tutorials.helpdesk.controllers;
 
 import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import name.alexkosarev.tutorials.helpdesk.async.JdbcExecutor;
+import name.alexkosarev.tutorials.helpdesk.entities.ArchivedTicket;
 import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
 import name.alexkosarev.tutorials.helpdesk.exceptions.EntityNotFoundException;
+import name.alexkosarev.tutorials.helpdesk.exceptions.InvalidCursorException;
+import name.alexkosarev.tutorials.helpdesk.exceptions.SearchResultWindowExceededException;
 import name.alexkosarev.tutorials.helpdesk.forms.TicketForm;
+import name.alexkosarev.tutorials.helpdesk.pagination.CursorSlice;
+import name.alexkosarev.tutorials.helpdesk.pagination.TicketCursor;
 import name.alexkosarev.tutorials.helpdesk.repositories.TicketCommentRepository;
 import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import name.alexkosarev.tutorials.helpdesk.services.TicketArchiveService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketCountService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketDeletionService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketSearchService;
+import static org.hamcrest.Matchers.isA;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Matchers.notNull;
 import org.mockito.Mock;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.MockitoAnnotations.initMocks;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import static org.springframework.test.web.ModelAndViewAssert.assertAndReturnModelAttributeOfType;
+import static org.springframework.test.web.ModelAndViewAssert.assertModelAttributeValue;
 import static org.springframework.test.web.ModelAndViewAssert.assertViewName;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.Errors;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.ModelAndView;
 
 /**
@@ -64,29 +93,126 @@ public class TicketsControllerTests {
     @Mock
     private TicketCommentRepository ticketCommentRepository;
 
+    @Mock
+    private TicketCountService ticketCountService;
+
+    @Mock
+    private TicketSearchService ticketSearchService;
+
+    @Mock
+    private TicketDeletionService ticketDeletionService;
+
+    @Mock
+    private TicketArchiveService ticketArchiveService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @Before
     public void setUp() {
         initMocks(this);
 
-        controller = new TicketsController(repository, ticketCommentRepository);
+        controller = new TicketsController(repository, ticketCommentRepository, ticketCountService, ticketSearchService,
+                ticketDeletionService, ticketArchiveService, eventPublisher, new JdbcExecutor(null, false, 1, 1));
     }
 
     /**
      * Просмотр списка заявок.
      *
-     * Должна быть возвращена модель, содержащая поле page типа {@link Pageable} и шаблон tickets/index.
+     * Должна быть возвращена модель, содержащая поле page типа {@link Slice} и шаблон tickets/index.
      */
     @Test
     public void indexShouldReturnModelAndView() {
-        doReturn(new PageImpl<>(Arrays.asList(new Ticket(), new Ticket(), new Ticket()))).when(repository)
-                .findAll(any(Pageable.class));
+        doReturn(new SliceImpl<>(Arrays.asList(new Ticket(), new Ticket(), new Ticket()))).when(repository)
+                .findAllBy(any(Pageable.class));
+
+        ModelAndView index = controller.index(new PageRequest(0, 10), Locale.ENGLISH).join();
+
+        verify(repository).findAllBy(notNull(Pageable.class));
+        verify(repository, never()).count();
+
+        assertViewName(index, "tickets/index");
+        assertEquals(3, assertAndReturnModelAttributeOfType(index, "page", Slice.class)
+                .getNumberOfElements());
+    }
+
+    /**
+     * Просмотр списка заявок при включённом фоновом подсчёте заявок.
+     *
+     * В модель должно быть добавлено приблизительное количество страниц.
+     */
+    @Test
+    public void indexWhenApproximateCountIsKnownShouldReturnTotalPages() {
+        doReturn(new SliceImpl<>(Arrays.asList(new Ticket(), new Ticket()), new PageRequest(0, 10), false)).when(repository)
+                .findAllBy(any(Pageable.class));
+        doReturn(5L).when(ticketCountService)
+                .getApproximateTotalPages(10, 0, false);
+
+        ModelAndView index = controller.index(new PageRequest(0, 10), Locale.ENGLISH).join();
+
+        assertEquals(5L, (long) assertAndReturnModelAttributeOfType(index, "totalPages", Long.class));
+    }
+
+    /**
+     * Просмотр списка заявок по курсору.
+     *
+     * Для пустого курсора должна быть запрошена первая страница и возвращена модель, содержащая поле page типа
+     * {@link CursorSlice}, и шаблон tickets/index.
+     */
+    @Test
+    public void indexByCursorShouldReturnModelAndView() throws InvalidCursorException {
+        doReturn(new CursorSlice<>(Arrays.asList(new Ticket(), new Ticket()), 2, null, "next")).when(repository)
+                .findAll(isNull(TicketCursor.class), eq(2));
 
-        ModelAndView index = controller.index(new PageRequest(0, 10));
+        ModelAndView index = controller.indexByCursor("", 2, Locale.ENGLISH).join();
 
-        verify(repository).findAll(notNull(Pageable.class));
+        verify(repository).findAll(isNull(TicketCursor.class), eq(2));
 
         assertViewName(index, "tickets/index");
-        assertEquals(3, assertAndReturnModelAttributeOfType(index, "page", Page.class)
+        assertEquals(2, assertAndReturnModelAttributeOfType(index, "page", CursorSlice.class)
+                .getContent().size());
+    }
+
+    /**
+     * Просмотр списка заявок по некорректному курсору.
+     *
+     * Должно быть выброшено исключение {@link InvalidCursorException}.
+     */
+    @Test
+    public void indexByCursorWhenCursorIsInvalidShouldThrowException() throws InvalidCursorException {
+        expectedException.expect(InvalidCursorException.class);
+
+        controller.indexByCursor("???", 10, Locale.ENGLISH);
+    }
+
+    /**
+     * Поиск заявок.
+     *
+     * Должна быть возвращена модель с найденными заявками и шаблон tickets/search.
+     */
+    @Test
+    public void searchShouldReturnModelAndView() throws SearchResultWindowExceededException {
+        doReturn(new PageImpl<>(Arrays.asList(new Ticket(), new Ticket()))).when(ticketSearchService)
+                .search(eq("printer"), any(Pageable.class));
+
+        ModelAndView search = controller.search("printer", new PageRequest(0, 10)).join();
+
+        assertViewName(search, "tickets/search");
+        assertEquals(2, assertAndReturnModelAttributeOfType(search, "page", Page.class)
+                .getNumberOfElements());
+    }
+
+    /**
+     * Поиск заявок по пустому запросу.
+     *
+     * Поиск не должен выполняться, должна быть возвращена пустая страница.
+     */
+    @Test
+    public void searchWhenQueryIsBlankShouldNotSearch() throws SearchResultWindowExceededException {
+        ModelAndView search = controller.search(" ", new PageRequest(0, 10)).join();
+
+        verify(ticketSearchService, never()).search(any(String.class), any(Pageable.class));
+        assertEquals(0, assertAndReturnModelAttributeOfType(search, "page", Page.class)
                 .getNumberOfElements());
     }
 
@@ -98,22 +224,85 @@ public class TicketsControllerTests {
      */
     @Test
     public void viewOneWhenTicketExistsShoudlReturnModelAndView() throws EntityNotFoundException {
-        ModelAndView viewOne = controller.viewOne(new Ticket(), new PageRequest(0, 10));
+        ModelAndView viewOne = controller.viewOne(newTicket(), 1, new PageRequest(0, 10), Locale.ENGLISH, newWebRequest()).join();
 
         assertViewName(viewOne, "tickets/viewOne");
         assertAndReturnModelAttributeOfType(viewOne, "ticket", Ticket.class);
     }
 
+    /**
+     * Повторный просмотр неизменившейся заявки с ETag из предыдущего ответа.
+     *
+     * Должен быть возвращён null без запроса комментариев, а ответ должен получить статус 304 Not Modified.
+     */
+    @Test
+    public void viewOneWhenClientCopyIsCurrentShouldReturnNullWithoutQueryingComments() throws EntityNotFoundException {
+        Ticket ticket = newTicket();
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        controller.viewOne(ticket, ticket.getId(), new PageRequest(0, 10), Locale.ENGLISH,
+                new ServletWebRequest(new MockHttpServletRequest("GET", "/tickets/1"), firstResponse));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/tickets/1");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, firstResponse.getHeader(HttpHeaders.ETAG));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        CompletableFuture<ModelAndView> viewOne = controller.viewOne(ticket, ticket.getId(), new PageRequest(0, 10), Locale.ENGLISH,
+                new ServletWebRequest(request, response));
+
+        assertNull(viewOne);
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+        verify(ticketCommentRepository).findByTicket(eq(ticket), any(Pageable.class));
+    }
+
+    /**
+     * Повторный просмотр заявки, изменившейся после предыдущего ответа.
+     *
+     * Должна быть возвращена модель и шаблон tickets/viewOne.
+     */
+    @Test
+    public void viewOneWhenTicketWasModifiedShouldReturnModelAndView() throws EntityNotFoundException {
+        Ticket ticket = newTicket();
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        controller.viewOne(ticket, ticket.getId(), new PageRequest(0, 10), Locale.ENGLISH,
+                new ServletWebRequest(new MockHttpServletRequest("GET", "/tickets/1"), firstResponse));
+        ticket.setDateModified(new Date(ticket.getDateModified().getTime() + 1000));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/tickets/1");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, firstResponse.getHeader(HttpHeaders.ETAG));
+        ModelAndView viewOne = controller.viewOne(ticket, ticket.getId(), new PageRequest(0, 10), Locale.ENGLISH,
+                new ServletWebRequest(request, new MockHttpServletResponse())).join();
+
+        assertViewName(viewOne, "tickets/viewOne");
+    }
+
     /**
      * Просмотр заявки, если заявка не существует.
      *
-     * Если заявка не найдена должно быть выброшено исключение {@link EntityNotFoundException}.
+     * Если заявка не найдена ни среди заявок, ни в архиве, результат должен быть завершён исключением
+     * {@link EntityNotFoundException}.
      */
     @Test
     public void viewOneWhenTicketDoesNotExistShouldThrowException() throws EntityNotFoundException {
-        expectedException.expect(EntityNotFoundException.class);
+        expectedException.expect(CompletionException.class);
+        expectedException.expectCause(isA(EntityNotFoundException.class));
+
+        controller.viewOne(null, 1, null, Locale.ENGLISH, newWebRequest()).join();
+    }
+
+    /**
+     * Просмотр заявки, перенесённой в архив.
+     *
+     * Должна быть возвращена модель, содержащая поле ticket типа {@link ArchivedTicket}, и шаблон tickets/archived.
+     */
+    @Test
+    public void viewOneWhenTicketIsArchivedShouldReturnArchivedTicket() throws EntityNotFoundException {
+        Date date = new Date();
+        doReturn(new ArchivedTicket(1, "Issue", "Details", date, date, 0, date, date)).when(ticketArchiveService).findOne(1);
+
+        ModelAndView viewOne = controller.viewOne(null, 1, new PageRequest(0, 10), Locale.ENGLISH, newWebRequest()).join();
 
-        controller.viewOne(null, null);
+        assertViewName(viewOne, "tickets/archived");
+        assertAndReturnModelAttributeOfType(viewOne, "ticket", ArchivedTicket.class);
+        verify(ticketArchiveService).findComments(eq(1), any(Pageable.class));
     }
 
     @Test
@@ -140,6 +329,8 @@ public class TicketsControllerTests {
 
         verify(bindingResult).hasErrors();
         verify(repository).save(notNull(Ticket.class));
+        verify(ticketCountService).increment();
+        verify(ticketSearchService).index(notNull(Ticket.class));
 
         assertViewName(create, "redirect:/tickets/0");
     }
@@ -212,6 +403,7 @@ public class TicketsControllerTests {
 
         verify(bindingResult).hasErrors();
         verify(repository).save(notNull(Ticket.class));
+        verify(ticketSearchService).index(notNull(Ticket.class));
 
         assertViewName(edit, "redirect:/tickets/0");
     }
@@ -240,6 +432,53 @@ public class TicketsControllerTests {
         assertEquals(HttpStatus.BAD_REQUEST, edit.getStatus());
     }
 
+    /**
+     * Сохранение изменений в заявке, если форма отправлена для устаревшей версии заявки.
+     *
+     * Если версия в форме не совпадает с версией заявки, заявка не должна быть сохранена, должна быть возвращена
+     * модель с текущей заявкой и отправленной формой, статусом 409 Conflict и шаблон tickets/conflict.
+     */
+    @Test
+    public void editWhenFormVersionIsStaleShouldReturnConflict() throws EntityNotFoundException {
+        BindingResult bindingResult = mock(BindingResult.class);
+        TicketForm form = new TicketForm("Issue", "Issue details", 0);
+        Ticket ticket = newTicket();
+        ticket.setVersion(1);
+
+        ModelAndView edit = controller.edit(form, bindingResult, ticket);
+
+        verify(repository, never()).save(any(Ticket.class));
+
+        assertViewName(edit, "tickets/conflict");
+        assertModelAttributeValue(edit, "ticket", ticket);
+        assertModelAttributeValue(edit, "form", form);
+        assertEquals(HttpStatus.CONFLICT, edit.getStatus());
+    }
+
+    /**
+     * Сохранение изменений в заявке, если заявка одновременно изменена другим пользователем.
+     *
+     * Если сохранение завершилось ошибкой оптимистической блокировки, должна быть возвращена модель с заново
+     * загруженной заявкой, статусом 409 Conflict и шаблон tickets/conflict.
+     */
+    @Test
+    public void editWhenTicketIsChangedConcurrentlyShouldReturnConflict() throws EntityNotFoundException {
+        BindingResult bindingResult = mock(BindingResult.class);
+        Ticket currentTicket = newTicket();
+        doThrow(new ObjectOptimisticLockingFailureException(Ticket.class, 1)).when(repository)
+                .save(any(Ticket.class));
+        doReturn(currentTicket).when(repository)
+                .findOne(1);
+
+        ModelAndView edit = controller.edit(new TicketForm("Issue", "Issue details", 0), bindingResult, newTicket());
+
+        verify(ticketSearchService, never()).index(any(Ticket.class));
+
+        assertViewName(edit, "tickets/conflict");
+        assertModelAttributeValue(edit, "ticket", currentTicket);
+        assertEquals(HttpStatus.CONFLICT, edit.getStatus());
+    }
+
     /**
      * Сохранение изменений в заявке, если заявка не существует.
      *
@@ -288,7 +527,9 @@ public class TicketsControllerTests {
     public void deleteWhenTicketExistsShouldDeleteTicketAndReturnRedirectionToIndex() throws EntityNotFoundException {
         ModelAndView deleteConfirmationPage = controller.delete(new Ticket());
 
-        verify(repository).delete(notNull(Ticket.class));
+        verify(ticketDeletionService).delete(notNull(Ticket.class));
+        verify(ticketCountService).decrement();
+        verify(ticketSearchService).delete(notNull(Ticket.class));
 
         assertViewName(deleteConfirmationPage, "redirect:/tickets");
     }
@@ -304,4 +545,13 @@ public class TicketsControllerTests {
 
         controller.delete(null);
     }
+
+    private static Ticket newTicket() {
+        Date now = new Date();
+        return new Ticket(1, "", "", now, now, 0, now, 0);
+    }
+
+    private static WebRequest newWebRequest() {
+        return new ServletWebRequest(new MockHttpServletRequest("GET", "/tickets"), new MockHttpServletResponse());
+    }
 }
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.controllers.api;
+
+import com.jayway.jsonpath.JsonPath;
+import java.util.Date;
+import name.alexkosarev.tutorials.helpdesk.pagination.TicketCursor;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.isEmptyOrNullString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Интеграционные тесты для тестирования {@link TicketsApiController} и {@link TicketCommentsApiController}
+ *
+ * @author Alexander Kosarev
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TicketsApiControllerIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Получение существующей заявки.
+     *
+     * Должна быть возвращена заявка в формате JSON с заголовком ETag.
+     */
+    @Test
+    public void viewOneShouldReturnTicket() throws Exception {
+        mockMvc.perform(get("/api/tickets/1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.ETAG, not(isEmptyOrNullString())))
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.issue").value("Ticket #1 issue"));
+    }
+
+    /**
+     * Повторное получение заявки с ETag из предыдущего ответа.
+     *
+     * Должен быть возвращён ответ 304 Not Modified без тела.
+     */
+    @Test
+    public void viewOneWithMatchingEtagShouldReturnNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/tickets/1"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/tickets/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andDo(print())
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    /**
+     * Получение несуществующей заявки.
+     *
+     * Должен быть возвращён ответ 404 Not Found.
+     */
+    @Test
+    public void viewOneWithUnknownTicketShouldReturnNotFound() throws Exception {
+        mockMvc.perform(get("/api/tickets/100500"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Получение первой страницы списка заявок.
+     *
+     * Должна быть возвращена страница запрошенного размера с курсором следующей страницы.
+     */
+    @Test
+    public void indexShouldReturnFirstPageWithNextCursor() throws Exception {
+        mockMvc.perform(get("/api/tickets").param("size", "1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.size").value(1))
+                .andExpect(jsonPath("$.nextCursor").isString());
+    }
+
+    /**
+     * Получение страницы списка заявок по курсору после самой старой заявки.
+     *
+     * Должна быть возвращена пустая страница только с курсором предыдущей страницы, а предыдущая страница должна
+     * содержать самые старые заявки без курсора следующей страницы.
+     */
+    @Test
+    public void indexWhenCursorIsAfterOldestTicketShouldReturnEmptyPageWithPreviousCursor() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/tickets")
+                .param("cursor", new TicketCursor(false, new Date(0), 0).encode()).param("size", "2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(0)))
+                .andExpect(jsonPath("$.previousCursor").isString())
+                .andExpect(jsonPath("$.nextCursor").doesNotExist())
+                .andReturn();
+        String previousCursor = JsonPath.read(result.getResponse().getContentAsString(), "$.previousCursor");
+
+        mockMvc.perform(get("/api/tickets").param("cursor", previousCursor).param("size", "2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.previousCursor").isString())
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    /**
+     * Получение страницы списка заявок по курсору перед самой новой заявкой.
+     *
+     * Должна быть возвращена пустая страница только с курсором следующей страницы.
+     */
+    @Test
+    public void indexWhenCursorIsBeforeNewestTicketShouldReturnEmptyPageWithNextCursor() throws Exception {
+        mockMvc.perform(get("/api/tickets")
+                .param("cursor", new TicketCursor(true, new Date(Long.MAX_VALUE / 2), 0).encode()))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(0)))
+                .andExpect(jsonPath("$.previousCursor").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor").isString());
+    }
+
+    /**
+     * Получение списка заявок с некорректным курсором.
+     *
+     * Должен быть возвращён ответ 400 Bad Request.
+     */
+    @Test
+    public void indexWithInvalidCursorShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/tickets").param("cursor", "not-a-cursor"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Создание, изменение и удаление заявки.
+     *
+     * Заявка должна быть создана с ответом 201 Created, изменена и удалена с ответом 204 No Content.
+     */
+    @Test
+    public void createEditDeleteShouldManageTicket() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/tickets")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"issue\":\"API issue\",\"issueDetails\":\"API issue details\"}"))
+                .andDo(print())
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.LOCATION, startsWith("http://localhost/api/tickets/")))
+                .andExpect(jsonPath("$.issue").value("API issue"))
+                .andReturn();
+        String location = result.getResponse().getHeader(HttpHeaders.LOCATION);
+
+        mockMvc.perform(put(location)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"issue\":\"API issue edited\"}"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.issue").value("API issue edited"))
+                .andExpect(jsonPath("$.issueDetails").doesNotExist());
+
+        mockMvc.perform(delete(location))
+                .andDo(print())
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get(location))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Создание заявки без указания проблемы.
+     *
+     * Должен быть возвращён ответ 400 Bad Request со списком ошибок валидации.
+     */
+    @Test
+    public void createWithBlankIssueShouldReturnFieldErrors() throws Exception {
+        mockMvc.perform(post("/api/tickets")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"issue\":\"\"}"))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].field").value("issue"))
+                .andExpect(jsonPath("$[0].message").isString());
+    }
+
+    /**
+     * Получение комментариев заявки.
+     *
+     * Должна быть возвращена страница комментариев заявки.
+     */
+    @Test
+    public void commentsIndexShouldReturnTicketComments() throws Exception {
+        mockMvc.perform(get("/api/tickets/1/comments"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].comment").value("Ticket #1 comment #1"))
+                .andExpect(jsonPath("$.hasNext").value(false));
+    }
+
+    /**
+     * Получение комментария, не относящегося к заявке.
+     *
+     * Должен быть возвращён ответ 404 Not Found.
+     */
+    @Test
+    public void commentOfAnotherTicketShouldReturnNotFound() throws Exception {
+        mockMvc.perform(get("/api/tickets/4/comments/1"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Создание и удаление комментария.
+     *
+     * Комментарий должен быть создан с ответом 201 Created и удалён с ответом 204 No Content.
+     */
+    @Test
+    public void createDeleteShouldManageComment() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/tickets/4/comments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"comment\":\"API comment\"}"))
+                .andDo(print())
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.LOCATION, startsWith("http://localhost/api/tickets/4/comments/")))
+                .andExpect(jsonPath("$.comment").value("API comment"))
+                .andReturn();
+        String location = result.getResponse().getHeader(HttpHeaders.LOCATION);
+
+        mockMvc.perform(delete(location))
+                .andDo(print())
+                .andExpect(status().isNoContent());
+    }
+
+    /**
+     * Удаление нескольких заявок с комментариями.
+     *
+     * Заявки и их комментарии должны быть удалены с ответом 204 No Content.
+     */
+    @Test
+    public void deleteAllShouldDeleteTicketsWithComments() throws Exception {
+        String first = createTicketWithComment("Bulk delete issue #1");
+        String second = createTicketWithComment("Bulk delete issue #2");
+
+        mockMvc.perform(delete("/api/tickets")
+                .param("id", first.substring(first.lastIndexOf('/') + 1))
+                .param("id", second.substring(second.lastIndexOf('/') + 1)))
+                .andDo(print())
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get(first))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get(second + "/comments"))
+                .andExpect(status().isNotFound());
+    }
+
+    private String createTicketWithComment(String issue) throws Exception {
+        String location = mockMvc.perform(post("/api/tickets")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"issue\":\"" + issue + "\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+
+        mockMvc.perform(post(location + "/comments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"comment\":\"" + issue + " comment\"}"))
+                .andExpect(status().isCreated());
+
+        return location;
+    }
+}
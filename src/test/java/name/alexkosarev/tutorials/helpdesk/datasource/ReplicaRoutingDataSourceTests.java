@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.datasource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import javax.sql.DataSource;
+import org.junit.After;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.MockitoAnnotations.initMocks;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Модульные тесты для тестирования {@link ReplicaRoutingDataSource}
+ *
+ * @author Alexander Kosarev
+ */
+public class ReplicaRoutingDataSourceTests {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource firstReplica;
+
+    @Mock
+    private DataSource secondReplica;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection firstReplicaConnection;
+
+    @Mock
+    private Connection secondReplicaConnection;
+
+    private ReplicaRoutingDataSource dataSource;
+
+    @Before
+    public void setUp() throws SQLException {
+        initMocks(this);
+
+        doReturn(primaryConnection).when(primary).getConnection();
+        doReturn(firstReplicaConnection).when(firstReplica).getConnection();
+        doReturn(secondReplicaConnection).when(secondReplica).getConnection();
+
+        dataSource = new ReplicaRoutingDataSource(primary, Arrays.asList(firstReplica, secondReplica));
+    }
+
+    @After
+    public void tearDown() {
+        ReplicaRoutingDataSource.setReplicaAllowed(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    /**
+     * Транзакция только для чтения в обработчике, которому разрешено читать с реплик.
+     *
+     * Соединения должны выдаваться репликами по очереди.
+     */
+    @Test
+    public void getConnectionWhenReadOnlyTransactionAndReplicaAllowedShouldUseReplicasInTurn() throws SQLException {
+        ReplicaRoutingDataSource.setReplicaAllowed(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertSame(firstReplicaConnection, dataSource.getConnection());
+        assertSame(secondReplicaConnection, dataSource.getConnection());
+        assertSame(firstReplicaConnection, dataSource.getConnection());
+    }
+
+    /**
+     * Транзакция только для чтения в обработчике без разрешения читать с реплик.
+     *
+     * Соединение должно выдаваться основной базой данных.
+     */
+    @Test
+    public void getConnectionWhenReplicaIsNotAllowedShouldUsePrimary() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertSame(primaryConnection, dataSource.getConnection());
+    }
+
+    /**
+     * Изменяющая транзакция в обработчике, которому разрешено читать с реплик.
+     *
+     * Соединение должно выдаваться основной базой данных.
+     */
+    @Test
+    public void getConnectionWhenTransactionIsNotReadOnlyShouldUsePrimary() throws SQLException {
+        ReplicaRoutingDataSource.setReplicaAllowed(true);
+
+        assertSame(primaryConnection, dataSource.getConnection());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.datasource;
+
+import javax.servlet.http.Cookie;
+import static name.alexkosarev.tutorials.helpdesk.AsyncRequests.performAndDispatch;
+import static org.hamcrest.Matchers.containsString;
+import org.flywaydb.core.Flyway;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Интеграционные тесты для тестирования чтения с реплики.
+ *
+ * Основную базу данных и реплику заменяют две независимые базы данных H2 в памяти. Реплика не получает изменений
+ * основной базы данных, что позволяет отличить чтение с реплики от чтения из основной базы данных. Количество
+ * SQL-запросов не проверяется: в отдельном контексте первое создание заявки дополнительно запрашивает блок
+ * идентификаторов из последовательности.
+ *
+ * @author Alexander Kosarev
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:replication-primary;DB_CLOSE_DELAY=-1",
+    "helpdesk.datasource.replicas.enabled=true",
+    "helpdesk.jdbc.query-budget.enforce=false",
+    "helpdesk.datasource.replicas.urls=" + ReplicaRoutingIntegrationTests.REPLICA_URL
+})
+@AutoConfigureMockMvc
+public class ReplicaRoutingIntegrationTests {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replication-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        DriverManagerDataSource replica = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(replica);
+        flyway.migrate();
+
+        new JdbcTemplate(replica).update("merge into ticket (id, issue, issue_details, date_created, date_modified, "
+                + "comment_count, last_activity) key (id) values (100, 'Replica ticket issue', null, now(), now(), 0, now())");
+    }
+
+    /**
+     * Просмотр заявки.
+     *
+     * Заявка должна быть прочитана с реплики.
+     */
+    @Test
+    public void viewShouldReadTicketFromReplica() throws Exception {
+        performAndDispatch(mockMvc, get("/tickets/100"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Replica ticket issue")));
+    }
+
+    /**
+     * Просмотр заявки после создания заявки и комментария.
+     *
+     * Клиент, создавший заявку, должен читать из основной базы данных и видеть созданную заявку вместе с
+     * комментарием, которых нет на реплике.
+     */
+    @Test
+    public void viewAfterCreateShouldReadTicketFromPrimary() throws Exception {
+        MvcResult create = mockMvc.perform(post("/tickets/create").param("issue", "Primary ticket issue"))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(cookie().exists(ReplicaRoutingInterceptor.PRIMARY_COOKIE))
+                .andReturn();
+        String location = create.getResponse().getRedirectedUrl();
+        Cookie cookie = create.getResponse().getCookie(ReplicaRoutingInterceptor.PRIMARY_COOKIE);
+        mockMvc.perform(post(location + "/comments").param("comment", "Primary ticket comment").cookie(cookie))
+                .andExpect(redirectedUrl(location));
+
+        performAndDispatch(mockMvc, get(location).cookie(cookie))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Primary ticket issue")))
+                .andExpect(content().string(containsString("Primary ticket comment")));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.messages;
+
+import java.util.Locale;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.context.NoSuchMessageException;
+import org.springframework.context.support.StaticMessageSource;
+
+/**
+ * Модульные тесты для тестирования {@link CachingMessageSource}
+ *
+ * @author Alexander Kosarev
+ */
+public class CachingMessageSourceTests {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private final Locale ru = new Locale("ru");
+
+    private StaticMessageSource delegate;
+
+    private CachingMessageSource messageSource;
+
+    @Before
+    public void setUp() {
+        delegate = new StaticMessageSource();
+        delegate.addMessage("btn.search", Locale.ENGLISH, "Search");
+        delegate.addMessage("btn.search", ru, "Поиск");
+        delegate.addMessage("page.greeting", Locale.ENGLISH, "Hello, {0}");
+
+        messageSource = new CachingMessageSource(delegate);
+    }
+
+    /**
+     * Повторное получение сообщения без аргументов.
+     *
+     * Сообщение должно быть разрешено для каждой локали отдельно и запомнено после первого обращения.
+     */
+    @Test
+    public void getMessageWithoutArgumentsShouldBeResolvedOncePerLocale() {
+        assertEquals("Search", messageSource.getMessage("btn.search", null, Locale.ENGLISH));
+        assertEquals("Поиск", messageSource.getMessage("btn.search", new Object[0], ru));
+
+        delegate.addMessage("btn.search", Locale.ENGLISH, "Find");
+
+        assertEquals("Search", messageSource.getMessage("btn.search", null, Locale.ENGLISH));
+    }
+
+    /**
+     * Получение сообщения с аргументами.
+     *
+     * Сообщение должно быть отформатировано исходным источником сообщений.
+     */
+    @Test
+    public void getMessageWithArgumentsShouldBeDelegated() {
+        assertEquals("Hello, World", messageSource.getMessage("page.greeting", new Object[]{"World"}, Locale.ENGLISH));
+    }
+
+    /**
+     * Получение отсутствующего сообщения.
+     *
+     * Должно быть возвращено сообщение по умолчанию, а при его отсутствии выброшено исключение
+     * {@link NoSuchMessageException}.
+     */
+    @Test
+    public void getMessageWhenMessageIsMissingShouldReturnDefaultMessageOrThrowException() {
+        assertEquals("default", messageSource.getMessage("missing", null, "default", Locale.ENGLISH));
+
+        expectedException.expect(NoSuchMessageException.class);
+
+        messageSource.getMessage("missing", null, Locale.ENGLISH);
+    }
+
+    /**
+     * Получение сообщений для большого количества локалей.
+     *
+     * Сверх ограничения сообщения должны разрешаться исходным источником без запоминания.
+     */
+    @Test
+    public void getMessageWhenLocaleLimitIsReachedShouldNotCacheMessages() {
+        for (int i = 0; i < CachingMessageSource.MAX_LOCALES; i++) {
+            messageSource.getMessage("btn.search", null, "", new Locale("x" + i));
+        }
+
+        assertEquals("Поиск", messageSource.getMessage("btn.search", null, ru));
+        delegate.addMessage("btn.search", ru, "Найти");
+
+        assertEquals("Найти", messageSource.getMessage("btn.search", null, ru));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import static name.alexkosarev.tutorials.helpdesk.AsyncRequests.performAndDispatch;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Интеграционные тесты для тестирования {@link ConnectionPoolMetricsPostProcessor}
+ *
+ * @author Alexander Kosarev
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ConnectionPoolMetricsIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Метрики пула соединений после обращения к базе данных.
+     *
+     * На эндпоинте /metrics должны быть количества соединений пула и перцентили времени ожидания соединения.
+     */
+    @Test
+    public void metricsShouldContainConnectionPoolStatistics() throws Exception {
+        performAndDispatch(mockMvc, get("/tickets"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/metrics").header(HttpHeaders.AUTHORIZATION, "Bearer test-scrape-token"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['helpdesk.pool.ActiveConnections']").isNumber())
+                .andExpect(jsonPath("$['helpdesk.pool.IdleConnections']").isNumber())
+                .andExpect(jsonPath("$['helpdesk.pool.PendingConnections']").isNumber())
+                .andExpect(jsonPath("$['helpdesk.pool.Wait.snapshot.99thPercentile']").isNumber());
+    }
+}
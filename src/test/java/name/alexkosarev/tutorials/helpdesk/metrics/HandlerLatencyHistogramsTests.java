@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+import name.alexkosarev.tutorials.helpdesk.controllers.TicketsController;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * Модульные тесты для тестирования {@link HandlerLatencyHistograms}
+ *
+ * @author Alexander Kosarev
+ */
+public class HandlerLatencyHistogramsTests {
+
+    /**
+     * Вывод записанных задержек.
+     *
+     * Для каждого этапа обработчика должны быть выведены квантили, сумма в секундах и количество запросов.
+     */
+    @Test
+    public void writePrometheusShouldWriteSummaryForEachPhase() throws Exception {
+        HandlerLatencyHistograms histograms = new HandlerLatencyHistograms();
+        HandlerMethod handler = new HandlerMethod(new Object(), Object.class.getMethod("toString")) {
+            @Override
+            public Class<?> getBeanType() {
+                return TicketsController.class;
+            }
+        };
+
+        histograms.record(handler, TimeUnit.MILLISECONDS.toNanos(2), TimeUnit.MILLISECONDS.toNanos(5), 0);
+        histograms.record(handler, TimeUnit.MILLISECONDS.toNanos(2), TimeUnit.MILLISECONDS.toNanos(5), 0);
+
+        StringWriter writer = new StringWriter();
+        histograms.writePrometheus(writer);
+        String output = writer.toString();
+
+        assertThat(output, containsString("# TYPE helpdesk_handler_latency_seconds summary\n"));
+        assertThat(output, containsString(
+                "helpdesk_handler_latency_seconds{handler=\"TicketsController.toString\",phase=\"controller\",quantile=\"0.5\"} 0.002"));
+        assertThat(output, containsString(
+                "helpdesk_handler_latency_seconds_sum{handler=\"TicketsController.toString\",phase=\"repository\"} 0.01\n"));
+        assertThat(output, containsString(
+                "helpdesk_handler_latency_seconds_count{handler=\"TicketsController.toString\",phase=\"view\"} 2\n"));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import name.alexkosarev.tutorials.helpdesk.exceptions.QueryBudgetExceededException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * Модульные тесты для тестирования {@link JdbcStatisticsFilter}
+ *
+ * @author Alexander Kosarev
+ */
+public class JdbcStatisticsFilterTests {
+
+    @Mock
+    private GaugeService gaugeService;
+
+    private MockHttpServletRequest request;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+
+        request = new MockHttpServletRequest();
+        request.setAttribute(JdbcStatisticsInterceptor.HANDLER_ATTRIBUTE,
+                new HandlerMethod(new Handler(), Handler.class.getMethod("handle")));
+    }
+
+    @After
+    public void tearDown() {
+        JdbcStatistics.end();
+    }
+
+    /**
+     * Обработка запроса в пределах бюджета SQL-запросов.
+     *
+     * Статистика должна быть записана в гистограммы обработчика.
+     */
+    @Test
+    public void doFilterWhenBudgetIsNotExceededShouldRecordHistograms() throws Exception {
+        new JdbcStatisticsFilter(gaugeService, 20, true)
+                .doFilter(request, new MockHttpServletResponse(), new MockFilterChain(new ExecutingServlet(2)));
+
+        verify(gaugeService).submit("histogram.jdbc.Handler.handle.statements", 2);
+        verify(gaugeService).submit(eq("histogram.jdbc.Handler.handle.micros"), eq(0D));
+        verify(gaugeService).submit("histogram.jdbc.Handler.handle.rows", 4);
+    }
+
+    /**
+     * Обработка запроса сверх бюджета SQL-запросов при включённой проверке.
+     *
+     * Должно быть выброшено исключение.
+     */
+    @Test(expected = QueryBudgetExceededException.class)
+    public void doFilterWhenBudgetIsExceededAndEnforcedShouldThrowException() throws Exception {
+        new JdbcStatisticsFilter(gaugeService, 20, true)
+                .doFilter(request, new MockHttpServletResponse(), new MockFilterChain(new ExecutingServlet(4)));
+    }
+
+    /**
+     * Обработка запроса сверх бюджета SQL-запросов при выключенной проверке.
+     *
+     * Статистика должна быть записана, исключение не должно быть выброшено.
+     */
+    @Test
+    public void doFilterWhenBudgetIsExceededAndNotEnforcedShouldRecordHistograms() throws Exception {
+        new JdbcStatisticsFilter(gaugeService, 20, false)
+                .doFilter(request, new MockHttpServletResponse(), new MockFilterChain(new ExecutingServlet(4)));
+
+        verify(gaugeService).submit("histogram.jdbc.Handler.handle.statements", 4);
+    }
+
+    /**
+     * Обработка запроса без обработчика.
+     *
+     * Статистика не должна быть записана.
+     */
+    @Test
+    public void doFilterWhenHandlerIsUnknownShouldNotRecordHistograms() throws Exception {
+        request.removeAttribute(JdbcStatisticsInterceptor.HANDLER_ATTRIBUTE);
+
+        new JdbcStatisticsFilter(gaugeService, 0, true)
+                .doFilter(request, new MockHttpServletResponse(), new MockFilterChain(new ExecutingServlet(4)));
+
+        verify(gaugeService, never()).submit(anyString(), eq(4D));
+    }
+
+    public static class Handler {
+
+        @QueryBudget(3)
+        public void handle() {
+        }
+    }
+
+    /**
+     * Сервлет, имитирующий выполнение SQL-запросов, каждый из которых возвращает две строки.
+     */
+    private static class ExecutingServlet extends HttpServlet {
+
+        private final int statements;
+
+        ExecutingServlet(int statements) {
+            this.statements = statements;
+        }
+
+        @Override
+        protected void service(HttpServletRequest req, HttpServletResponse resp) {
+            JdbcStatistics statistics = JdbcStatistics.current();
+            for (int i = 0; i < statements; i++) {
+                statistics.statementExecuted(0);
+                statistics.rowFetched();
+                statistics.rowFetched();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Интеграционные тесты для тестирования {@link MetricsScrapeFilter}
+ *
+ * @author Alexander Kosarev
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MetricsScrapeFilterIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Запрос метрик с токеном сборщика метрик.
+     *
+     * Должны быть возвращены метрики.
+     */
+    @Test
+    public void metricsWhenTokenIsValidShouldReturnMetrics() throws Exception {
+        mockMvc.perform(get("/metrics").header(HttpHeaders.AUTHORIZATION, "Bearer test-scrape-token"))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Запрос метрик без токена сборщика метрик.
+     *
+     * Должен быть возвращён ответ 401 Unauthorized.
+     */
+    @Test
+    public void metricsWhenTokenIsMissingShouldReturnUnauthorized() throws Exception {
+        mockMvc.perform(get("/metrics"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    /**
+     * Запрос метрик с неверным токеном.
+     *
+     * Должен быть возвращён ответ 401 Unauthorized.
+     */
+    @Test
+    public void metricsWhenTokenIsInvalidShouldReturnUnauthorized() throws Exception {
+        mockMvc.perform(get("/metrics").header(HttpHeaders.AUTHORIZATION, "Bearer another-token"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    /**
+     * Запрос другого защищённого эндпоинта с токеном сборщика метрик.
+     *
+     * Токен должен давать доступ только к метрикам, должен быть возвращён ответ 401 Unauthorized.
+     */
+    @Test
+    public void envWhenTokenIsValidShouldReturnUnauthorized() throws Exception {
+        mockMvc.perform(get("/env").header(HttpHeaders.AUTHORIZATION, "Bearer test-scrape-token"))
+                .andExpect(status().isUnauthorized());
+    }
+}
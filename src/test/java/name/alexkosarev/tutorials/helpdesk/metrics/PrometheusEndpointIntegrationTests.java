@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.metrics;
+
+import static name.alexkosarev.tutorials.helpdesk.AsyncRequests.performAndDispatch;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Интеграционные тесты для тестирования {@link PrometheusEndpoint} и {@link HandlerLatencyInterceptor}
+ *
+ * @author Alexander Kosarev
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class PrometheusEndpointIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Задержки обработчиков после запросов к страницам заявок.
+     *
+     * На эндпоинте /prometheus должны быть задержки обработчиков контроллеров заявок и комментариев по этапам, а
+     * обработчики других контроллеров не должны измеряться.
+     */
+    @Test
+    public void prometheusShouldContainHandlerLatencyByPhase() throws Exception {
+        performAndDispatch(mockMvc, get("/tickets"))
+                .andExpect(status().isOk());
+        performAndDispatch(mockMvc, get("/tickets/1/comments/1/delete"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/tickets/export"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/prometheus").header(HttpHeaders.AUTHORIZATION, "Bearer test-scrape-token"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/plain"))
+                .andExpect(content().string(containsString("# TYPE helpdesk_handler_latency_seconds summary")))
+                .andExpect(content().string(containsString(
+                        "helpdesk_handler_latency_seconds{handler=\"TicketsController.index\",phase=\"controller\",quantile=\"0.99\"}")))
+                .andExpect(content().string(containsString(
+                        "helpdesk_handler_latency_seconds_count{handler=\"TicketsController.index\",phase=\"repository\"}")))
+                .andExpect(content().string(containsString(
+                        "helpdesk_handler_latency_seconds_sum{handler=\"TicketCommentsController.deletePage\",phase=\"view\"}")))
+                .andExpect(content().string(not(containsString("TicketExportController"))));
+    }
+
+    /**
+     * Запрос задержек обработчиков без токена сборщика метрик.
+     *
+     * Должен быть возвращён ответ 401 Unauthorized.
+     */
+    @Test
+    public void prometheusWhenTokenIsMissingShouldReturnUnauthorized() throws Exception {
+        mockMvc.perform(get("/prometheus"))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.pagecache;
+
+import java.util.Locale;
+import javax.persistence.EntityManagerFactory;
+import static name.alexkosarev.tutorials.helpdesk.AsyncRequests.performAndDispatch;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Интеграционные тесты для тестирования {@link TicketPageCacheFilter}
+ *
+ * @author Alexander Kosarev
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TicketPageCacheFilterIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TicketPageCache cache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Повторный запрос страницы списка заявок.
+     *
+     * Страница должна быть выдана из кеша без обращения к базе данных, пока не будет создана новая заявка, и с учётом
+     * условного запроса по ETag.
+     */
+    @Test
+    public void indexWhenPageWasRenderedShouldBeServedFromCacheUntilTicketIsCreated() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String body = performAndDispatch(mockMvc, get("/tickets").param("size", "3").param("sort", "id,desc"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long hitCount = cache.getHitCount();
+        long statementCount = statistics.getPrepareStatementCount();
+
+        String etag = performAndDispatch(mockMvc, get("/tickets").param("size", "3").param("sort", "id,desc"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/html"))
+                .andExpect(content().string(body))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertEquals(hitCount + 1, cache.getHitCount());
+        assertEquals(statementCount, statistics.getPrepareStatementCount());
+
+        performAndDispatch(mockMvc, get("/tickets").param("size", "3").param("sort", "id,desc")
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/tickets/create")
+                .param("issue", "Page cache invalidation issue"))
+                .andExpect(status().is3xxRedirection());
+
+        performAndDispatch(mockMvc, get("/tickets").param("size", "3").param("sort", "id,desc"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Page cache invalidation issue")));
+    }
+
+    /**
+     * Запрос страницы списка заявок в другой локали.
+     *
+     * Страница должна быть отрисована для запрошенной локали, а не выдана из кеша другой локали.
+     */
+    @Test
+    public void indexShouldBeCachedPerLocale() throws Exception {
+        String english = performAndDispatch(mockMvc, get("/tickets").param("size", "2").locale(Locale.ENGLISH))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        performAndDispatch(mockMvc, get("/tickets").param("size", "2").locale(new Locale("ru")))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(not(english)));
+    }
+
+    /**
+     * Статистика кеша страниц.
+     *
+     * Количество попаданий и промахов должно быть доступно через /metrics.
+     */
+    @Test
+    public void metricsShouldContainPageCacheStatistics() throws Exception {
+        performAndDispatch(mockMvc, get("/tickets"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/metrics").header(HttpHeaders.AUTHORIZATION, "Bearer test-scrape-token"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['tickets.page-cache.hit']").isNumber())
+                .andExpect(jsonPath("$['tickets.page-cache.miss']").isNumber())
+                .andExpect(jsonPath("$['tickets.page-cache.hit-ratio']").isNumber());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.pagecache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Модульные тесты для тестирования {@link TicketPageCache}
+ *
+ * @author Alexander Kosarev
+ */
+public class TicketPageCacheTests {
+
+    /**
+     * Сохранение страниц сверх допустимого объёма.
+     *
+     * Должны быть вытеснены давно не запрошенные страницы.
+     */
+    @Test
+    public void putWhenMaxSizeIsExceededShouldEvictLeastRecentlyUsedPages() {
+        TicketPageCache cache = new TicketPageCache(20);
+
+        cache.put("a", cache.getGeneration(), page(8));
+        cache.put("b", cache.getGeneration(), page(8));
+        cache.get("a");
+        cache.put("c", cache.getGeneration(), page(8));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(16, cache.getSize());
+    }
+
+    /**
+     * Сохранение страницы, превышающей допустимый объём кеша.
+     *
+     * Страница не должна быть сохранена.
+     */
+    @Test
+    public void putWhenPageIsLargerThanMaxSizeShouldDoNothing() {
+        TicketPageCache cache = new TicketPageCache(4);
+
+        cache.put("a", cache.getGeneration(), page(8));
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getPageCount());
+    }
+
+    /**
+     * Сохранение страницы, отрисованной до очистки кеша.
+     *
+     * Страница не должна быть сохранена, так как может содержать устаревшие данные.
+     */
+    @Test
+    public void putWhenCacheWasInvalidatedDuringRenderingShouldDoNothing() {
+        TicketPageCache cache = new TicketPageCache(100);
+        cache.put("a", cache.getGeneration(), page(8));
+        long generation = cache.getGeneration();
+
+        cache.invalidate();
+        cache.put("b", generation, page(8));
+
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    private static RenderedPage page(int size) {
+        return new RenderedPage("text/html;charset=UTF-8", new HttpHeaders(), new byte[size]);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.pagination;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.exceptions.InvalidCursorException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Модульные тесты для тестирования {@link TicketCursor}
+ *
+ * @author Alexander Kosarev
+ */
+public class TicketCursorTests {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    /**
+     * Кодирование и разбор курсора.
+     *
+     * Разобранный курсор должен совпадать с исходным, включая наносекунды даты создания.
+     */
+    @Test
+    public void decodeShouldRestoreEncodedCursor() throws InvalidCursorException {
+        Timestamp dateCreated = new Timestamp(1500000000123L);
+        dateCreated.setNanos(123456789);
+
+        TicketCursor cursor = TicketCursor.decode(TicketCursor.before(new Ticket(42, "", "", dateCreated, dateCreated, 0, dateCreated, 0)).encode());
+
+        assertTrue(cursor.isBackward());
+        assertEquals(42, cursor.getId());
+        assertEquals(dateCreated, cursor.getDateCreated());
+    }
+
+    /**
+     * Кодирование курсора с датой создания типа {@link Date}.
+     *
+     * Миллисекунды даты создания должны сохраняться.
+     */
+    @Test
+    public void decodeShouldRestoreMillisecondsOfPlainDate() throws InvalidCursorException {
+        Date dateCreated = new Date(1500000000123L);
+
+        TicketCursor cursor = TicketCursor.decode(TicketCursor.after(new Ticket(7, "", "", dateCreated, dateCreated, 0, dateCreated, 0)).encode());
+
+        assertFalse(cursor.isBackward());
+        assertEquals(7, cursor.getId());
+        assertEquals(dateCreated.getTime(), cursor.getDateCreated().getTime());
+    }
+
+    /**
+     * Разбор некорректного курсора.
+     *
+     * Должно быть выброшено исключение {@link InvalidCursorException}.
+     */
+    @Test
+    public void decodeWhenCursorIsMalformedShouldThrowException() throws InvalidCursorException {
+        expectedException.expect(InvalidCursorException.class);
+
+        TicketCursor.decode("not a cursor");
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.ratelimit;
+
+import com.codahale.metrics.MetricRegistry;
+import static name.alexkosarev.tutorials.helpdesk.AsyncRequests.performAndDispatch;
+import javax.servlet.http.Cookie;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Интеграционные тесты для тестирования {@link RateLimitInterceptor}
+ *
+ * @author Alexander Kosarev
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+    "helpdesk.rate-limit.enabled=true",
+    "helpdesk.rate-limit.capacity=2",
+    "helpdesk.rate-limit.rate=0.1",
+    "helpdesk.rate-limit.address-capacity=4",
+    "helpdesk.rate-limit.address-rate=0.1"
+})
+@AutoConfigureMockMvc
+public class RateLimitInterceptorIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RateLimitInterceptor rateLimitInterceptor;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    /**
+     * Изменяющие запросы клиента сверх ёмкости корзины.
+     *
+     * Запросы сверх ёмкости корзины должны получить ответ 429 Too Many Requests с заголовком Retry-After, запросы на
+     * чтение того же клиента и изменяющие запросы другого клиента с подписанным cookie должны выполняться, отказы
+     * должны учитываться в метриках.
+     */
+    @Test
+    public void createWhenClientExceedsLimitShouldReturnTooManyRequests() throws Exception {
+        Cookie client = new Cookie(RateLimitInterceptor.CLIENT_COOKIE, rateLimitInterceptor.sign("flooding-client"));
+        long clientRejections = metricRegistry.meter("helpdesk.rate-limit.client-rejections").getCount();
+
+        mockMvc.perform(post("/tickets/1/comments").cookie(client).with(remoteAddr("192.0.2.10")))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/tickets/1/comments").cookie(client).with(remoteAddr("192.0.2.10")))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/tickets/1/comments").cookie(client).with(remoteAddr("192.0.2.10")))
+                .andDo(print())
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"));
+
+        performAndDispatch(mockMvc, get("/tickets/1").cookie(client).with(remoteAddr("192.0.2.10")))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/tickets/1/comments")
+                .cookie(new Cookie(RateLimitInterceptor.CLIENT_COOKIE, rateLimitInterceptor.sign("another-client")))
+                .with(remoteAddr("192.0.2.10")))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(clientRejections + 1,
+                metricRegistry.meter("helpdesk.rate-limit.client-rejections").getCount());
+    }
+
+    /**
+     * Изменяющие запросы клиента, подставляющего cookie без подписи.
+     *
+     * Cookie без верной подписи не должны давать клиенту новых корзин: запросы сверх ёмкости корзины адреса должны
+     * получить ответ 429 Too Many Requests.
+     */
+    @Test
+    public void createWhenClientForgesCookiesShouldShareAddressBucket() throws Exception {
+        Cookie signed = new Cookie(RateLimitInterceptor.CLIENT_COOKIE, rateLimitInterceptor.sign("forging-client"));
+
+        mockMvc.perform(post("/tickets/1/comments")
+                .cookie(new Cookie(RateLimitInterceptor.CLIENT_COOKIE, "random-client-1"))
+                .with(remoteAddr("192.0.2.20")))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/tickets/1/comments")
+                .cookie(new Cookie(RateLimitInterceptor.CLIENT_COOKIE, "another-client." + signed.getValue()))
+                .with(remoteAddr("192.0.2.20")))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/tickets/1/comments")
+                .cookie(new Cookie(RateLimitInterceptor.CLIENT_COOKIE, "random-client-3"))
+                .with(remoteAddr("192.0.2.20")))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    /**
+     * Изменяющие запросы клиента, меняющего подписанные cookie.
+     *
+     * Каждое новое cookie даёт отдельную корзину клиента, но запросы сверх ёмкости корзины адреса должны получить
+     * ответ 429 Too Many Requests.
+     */
+    @Test
+    public void createWhenClientRotatesCookiesShouldChargeAddressBucket() throws Exception {
+        for (int i = 1; i <= 4; i++) {
+            mockMvc.perform(post("/tickets/1/comments")
+                    .cookie(new Cookie(RateLimitInterceptor.CLIENT_COOKIE, rateLimitInterceptor.sign("rotating-" + i)))
+                    .with(remoteAddr("192.0.2.30")))
+                    .andExpect(status().isBadRequest());
+        }
+        mockMvc.perform(post("/tickets/1/comments")
+                .cookie(new Cookie(RateLimitInterceptor.CLIENT_COOKIE, rateLimitInterceptor.sign("rotating-5")))
+                .with(remoteAddr("192.0.2.30")))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"));
+    }
+
+    /**
+     * Первый изменяющий запрос клиента без cookie.
+     *
+     * Клиенту должно быть выдано cookie с подписанным идентификатором.
+     */
+    @Test
+    public void createWhenClientHasNoCookieShouldIssueClientCookie() throws Exception {
+        MvcResult result = mockMvc.perform(post("/tickets/1/comments").with(remoteAddr("192.0.2.1")))
+                .andExpect(status().isBadRequest())
+                .andExpect(cookie().exists(RateLimitInterceptor.CLIENT_COOKIE))
+                .andReturn();
+
+        String value = result.getResponse().getCookie(RateLimitInterceptor.CLIENT_COOKIE).getValue();
+        assertEquals(rateLimitInterceptor.sign(value.substring(0, value.lastIndexOf('.'))), value);
+    }
+
+    private static RequestPostProcessor remoteAddr(String remoteAddr) {
+        return request -> {
+            request.setRemoteAddr(remoteAddr);
+            return request;
+        };
+    }
+}
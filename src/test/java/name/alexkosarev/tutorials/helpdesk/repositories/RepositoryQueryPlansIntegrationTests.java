@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.repositories;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Date;
+import javax.persistence.EntityManagerFactory;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import static org.hamcrest.Matchers.containsString;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Интеграционные тесты для проверки планов выполнения запросов репозиториев.
+ *
+ * Для JPQL-запросов репозиториев Hibernate генерирует SQL, план которого запрашивается у базы данных через EXPLAIN.
+ *
+ * @author Alexander Kosarev
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class RepositoryQueryPlansIntegrationTests {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void findAllByOrderByDateCreatedDescIdDescShouldReadTicketsFromIndexInOrder() {
+        String plan = explain("select t from Ticket t order by t.dateCreated desc, t.id desc");
+
+        assertThat(plan, containsString("TICKET_DATE_CREATED_ID_IDX"));
+        assertThat(plan, containsString("index sorted"));
+    }
+
+    @Test
+    public void findOlderThanShouldReadTicketsFromIndexRangeInOrder() throws NoSuchMethodException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        String plan = explain(query(TicketRepository.class, "findOlderThan", Date.class, int.class, Pageable.class),
+                now, now, 1);
+
+        assertThat(plan, containsString("TICKET_DATE_CREATED_ID_IDX: DATE_CREATED <="));
+        assertThat(plan, containsString("index sorted"));
+    }
+
+    @Test
+    public void findNewerThanShouldReadTicketsFromIndexRange() throws NoSuchMethodException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        String plan = explain(query(TicketRepository.class, "findNewerThan", Date.class, int.class, Pageable.class),
+                now, now, 1);
+
+        assertThat(plan, containsString("TICKET_DATE_CREATED_ID_IDX: DATE_CREATED >="));
+    }
+
+    @Test
+    public void findAllBySortedByLastActivityShouldReadTicketsFromIndexInOrder() {
+        String plan = explain("select t from Ticket t order by t.lastActivity desc");
+
+        assertThat(plan, containsString("TICKET_LAST_ACTIVITY_ID_IDX"));
+        assertThat(plan, containsString("index sorted"));
+    }
+
+    @Test
+    public void findAllBySortedByCommentCountShouldReadTicketsFromIndexInOrder() {
+        String plan = explain("select t from Ticket t order by t.commentCount desc");
+
+        assertThat(plan, containsString("TICKET_COMMENT_COUNT_ID_IDX"));
+        assertThat(plan, containsString("index sorted"));
+    }
+
+    @Test
+    public void findByTicketShouldLookUpCommentsByIndex() throws NoSuchMethodException {
+        String plan = explain(query(TicketCommentRepository.class, "findByTicket", Ticket.class, Pageable.class), 1);
+
+        assertThat(plan, containsString("TICKET_COMMENT_TICKET_ID_DATE_CREATED_IDX: TICKET_ID ="));
+    }
+
+    private static String query(Class<?> repository, String methodName, Class<?>... parameterTypes) throws NoSuchMethodException {
+        return repository.getMethod(methodName, parameterTypes).getAnnotation(Query.class).value();
+    }
+
+    private String explain(String jpql, Object... parameters) {
+        String[] sql = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getQueryPlanCache()
+                .getHQLQueryPlan(jpql, false, Collections.emptyMap()).getSqlStrings();
+
+        return jdbcTemplate.queryForObject("explain " + sql[0], String.class, parameters);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.services;
+
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+/**
+ * Модульные тесты для тестирования {@link TicketCountService}
+ *
+ * @author Alexander Kosarev
+ */
+public class TicketCountServiceTests {
+
+    @Mock
+    private TicketRepository repository;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        doReturn(25L).when(repository)
+                .count();
+    }
+
+    /**
+     * Обновление выключенного подсчёта заявок.
+     *
+     * Запрос количества заявок не должен выполняться, количество страниц должно быть неизвестно.
+     */
+    @Test
+    public void refreshWhenDisabledShouldDoNothing() {
+        TicketCountService service = new TicketCountService(repository, false);
+
+        service.refresh();
+
+        verify(repository, never()).count();
+        assertNull(service.getApproximateTotalPages(10, 0, true));
+    }
+
+    /**
+     * Обновление включённого подсчёта заявок.
+     *
+     * Количество заявок должно быть запрошено и скорректировано при создании и удалении заявок.
+     */
+    @Test
+    public void refreshWhenEnabledShouldCountTickets() {
+        TicketCountService service = new TicketCountService(repository, true);
+
+        service.refresh();
+        service.increment();
+        service.increment();
+        service.decrement();
+
+        assertEquals(26L, (long) service.getApproximateCount());
+        assertEquals(3L, (long) service.getApproximateTotalPages(10, 0, true));
+    }
+
+    /**
+     * Обновление подсчёта заявок, во время которого создаются заявки.
+     *
+     * Заявки, созданные во время запроса количества, не должны потеряться при публикации результата.
+     */
+    @Test
+    public void refreshWhenTicketsAreCreatedDuringCountShouldKeepThem() {
+        TicketCountService service = new TicketCountService(repository, true);
+        service.refresh();
+        doAnswer(invocation -> {
+            service.increment(2);
+            return 25L;
+        }).when(repository)
+                .count();
+
+        service.refresh();
+
+        assertEquals(27L, (long) service.getApproximateCount());
+    }
+
+    /**
+     * Количество страниц при устаревшем количестве заявок.
+     *
+     * Количество страниц не должно быть меньше известного по текущей странице.
+     */
+    @Test
+    public void approximateTotalPagesShouldNotBeLessThanCurrentPage() {
+        TicketCountService service = new TicketCountService(repository, true);
+
+        service.refresh();
+
+        assertEquals(7L, (long) service.getApproximateTotalPages(10, 5, true));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.services;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import name.alexkosarev.tutorials.helpdesk.entities.Ticket;
+import name.alexkosarev.tutorials.helpdesk.exceptions.SearchResultWindowExceededException;
+import name.alexkosarev.tutorials.helpdesk.projections.TicketCommentText;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketCommentRepository;
+import name.alexkosarev.tutorials.helpdesk.repositories.TicketRepository;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import org.mockito.Mock;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.MockitoAnnotations.initMocks;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Модульные тесты для тестирования {@link TicketSearchService}
+ *
+ * @author Alexander Kosarev
+ */
+public class TicketSearchServiceTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Mock
+    private TicketRepository ticketRepository;
+
+    @Mock
+    private TicketCommentRepository ticketCommentRepository;
+
+    private TicketSearchService service;
+
+    private final Ticket printerTicket = new Ticket(1, "Printer is broken", "Paper jam on the second floor", new Date(), new Date(), 0, new Date(), 0);
+
+    private final Ticket networkTicket = new Ticket(2, "Network is down", "No connection", new Date(), new Date(), 0, new Date(), 0);
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+
+        doReturn(Arrays.asList(printerTicket, networkTicket)).when(ticketRepository)
+                .findAllByOrderByDateCreatedDescIdDesc(any(Pageable.class));
+        doReturn(Arrays.asList(printerTicket, networkTicket)).when(ticketRepository)
+                .findAll(Arrays.asList(1, 2));
+        doReturn(Arrays.asList(networkTicket, printerTicket)).when(ticketRepository)
+                .findAll(Arrays.asList(2, 1));
+        doReturn(Collections.singletonList(networkTicket)).when(ticketRepository)
+                .findAll(Collections.singletonList(2));
+        doReturn(Collections.singletonList(new TicketCommentText(2, "The printer cable was unplugged"))).when(ticketCommentRepository)
+                .findTextsByTicketIn(anyCollectionOf(Ticket.class));
+
+        service = new TicketSearchService(ticketRepository, ticketCommentRepository,
+                temporaryFolder.getRoot().getPath(), 10);
+        service.rebuild();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        service.close();
+    }
+
+    /**
+     * Поиск заявок по слову из проблемы и комментария.
+     *
+     * Должны быть найдены обе заявки, заявка с совпадением в проблеме должна быть первой.
+     */
+    @Test
+    public void searchShouldRankIssueMatchesFirst() {
+        Page<Ticket> page = service.search("printer", new PageRequest(0, 10));
+
+        assertEquals(2, page.getTotalElements());
+        assertEquals(Arrays.asList(printerTicket, networkTicket), page.getContent());
+    }
+
+    /**
+     * Поиск заявок после удаления заявки из индекса.
+     *
+     * Удалённая заявка не должна быть найдена.
+     */
+    @Test
+    public void searchWhenTicketWasDeletedShouldNotFindIt() {
+        service.delete(printerTicket);
+
+        Page<Ticket> page = service.search("printer", new PageRequest(0, 10));
+
+        assertEquals(Collections.singletonList(networkTicket), page.getContent());
+    }
+
+    /**
+     * Поиск заявок после изменения заявки.
+     *
+     * Заявка должна быть найдена по новому тексту и не должна находиться по старому.
+     */
+    @Test
+    public void searchWhenTicketWasReindexedShouldFindNewText() {
+        doReturn(Collections.emptyList()).when(ticketCommentRepository)
+                .findTextsByTicketIn(anyCollectionOf(Ticket.class));
+        networkTicket.setIssue("Wi-Fi is slow");
+        service.index(networkTicket);
+
+        assertEquals(Collections.singletonList(networkTicket),
+                service.search("wi-fi slow", new PageRequest(0, 10)).getContent());
+        assertEquals(0, service.search("network", new PageRequest(0, 10)).getTotalElements());
+    }
+
+    /**
+     * Перестроение индекса после удаления заявки из базы данных.
+     *
+     * Документ заявки, которой больше нет, должен быть удалён, остальные заявки должны находиться.
+     */
+    @Test
+    public void rebuildWhenTicketWasRemovedShouldDropItsDocument() {
+        doReturn(Collections.singletonList(networkTicket)).when(ticketRepository)
+                .findAllByOrderByDateCreatedDescIdDesc(any(Pageable.class));
+        service.rebuild();
+
+        assertEquals(Collections.singletonList(networkTicket),
+                service.search("printer", new PageRequest(0, 10)).getContent());
+    }
+
+    /**
+     * Проверка страницы за пределами окна результатов поиска.
+     *
+     * Должно быть выброшено исключение {@link SearchResultWindowExceededException}.
+     */
+    @Test
+    public void checkResultWindowWhenPageExceedsWindowShouldThrowException() throws Exception {
+        service.checkResultWindow(new PageRequest(0, 10));
+
+        expectedException.expect(SearchResultWindowExceededException.class);
+        service.checkResultWindow(new PageRequest(Integer.MAX_VALUE / 10, 10));
+    }
+}
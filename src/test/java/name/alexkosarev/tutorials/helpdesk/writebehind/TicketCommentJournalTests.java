@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.writebehind;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Модульные тесты для тестирования {@link TicketCommentJournal}
+ *
+ * @author Alexander Kosarev
+ */
+public class TicketCommentJournalTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException {
+        path = temporaryFolder.getRoot().toPath().resolve("comments.journal");
+    }
+
+    /**
+     * Повторное открытие журнала.
+     *
+     * Записи после последней отметки о сохранении должны быть возвращены в порядке добавления, нумерация записей
+     * должна продолжиться с последнего номера.
+     */
+    @Test
+    public void openWhenJournalHasUnsavedEntriesShouldReturnThem() throws IOException {
+        try (TicketCommentJournal journal = new TicketCommentJournal(path, false)) {
+            assertTrue(journal.open().isEmpty());
+            journal.append(new PendingTicketComment(1, 1, "First", new Date()));
+            journal.append(new PendingTicketComment(2, 2, "Second", new Date()));
+            journal.checkpoint(1);
+            journal.append(new PendingTicketComment(3, 1, "Third", new Date()));
+        }
+
+        try (TicketCommentJournal journal = new TicketCommentJournal(path, false)) {
+            List<PendingTicketComment> pending = journal.open();
+
+            assertEquals(2, pending.size());
+            assertEquals("Second", pending.get(0).getComment());
+            assertEquals("Third", pending.get(1).getComment());
+            assertEquals(3, journal.getLastSequence());
+        }
+    }
+
+    /**
+     * Отметка о сохранении всех записей журнала.
+     *
+     * Файл журнала должен быть очищен, а нумерация записей после повторного открытия должна продолжиться.
+     */
+    @Test
+    public void checkpointWhenAllEntriesAreSavedShouldTruncateJournal() throws IOException {
+        try (TicketCommentJournal journal = new TicketCommentJournal(path, false)) {
+            journal.open();
+            journal.append(new PendingTicketComment(1, 1, "First", new Date()));
+            journal.append(new PendingTicketComment(2, 1, "Second", new Date()));
+            journal.checkpoint(2);
+
+            assertEquals(0, Files.size(path));
+        }
+
+        try (TicketCommentJournal journal = new TicketCommentJournal(path, false)) {
+            assertTrue(journal.open().isEmpty());
+            assertEquals(2, journal.getLastSequence());
+        }
+    }
+
+    /**
+     * Отметка о сохранении части записей журнала, если очередь не опустошается.
+     *
+     * Сохранённые записи должны быть удалены из файла журнала, несохранённые записи должны остаться и быть возвращены
+     * после повторного открытия, а новые записи должны добавляться в сжатый файл.
+     */
+    @Test
+    public void checkpointWhenSavedEntriesExceedCompactionSizeShouldCompactJournal() throws IOException {
+        try (TicketCommentJournal journal = new TicketCommentJournal(path, false, 1)) {
+            journal.open();
+            journal.append(new PendingTicketComment(1, 1, "First", new Date()));
+            journal.append(new PendingTicketComment(2, 1, "Second", new Date()));
+            journal.append(new PendingTicketComment(3, 1, "Third", new Date()));
+            journal.checkpoint(1);
+
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            assertEquals(2, lines.size());
+            assertTrue(lines.get(0).contains("\"Second\""));
+
+            journal.append(new PendingTicketComment(4, 1, "Fourth", new Date()));
+            journal.checkpoint(2);
+
+            lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            assertEquals(2, lines.size());
+            assertTrue(lines.get(0).contains("\"Third\""));
+            assertTrue(lines.get(1).contains("\"Fourth\""));
+        }
+
+        try (TicketCommentJournal journal = new TicketCommentJournal(path, false, 1)) {
+            List<PendingTicketComment> pending = journal.open();
+
+            assertEquals(2, pending.size());
+            assertEquals("Third", pending.get(0).getComment());
+            assertEquals("Fourth", pending.get(1).getComment());
+            assertEquals(4, journal.getLastSequence());
+        }
+    }
+
+    /**
+     * Открытие журнала, последняя запись которого записана не полностью.
+     *
+     * Повреждённая запись должна быть пропущена, остальные записи должны быть возвращены, а следующая запись должна
+     * быть добавлена с новой строки.
+     */
+    @Test
+    public void openWhenLastEntryIsIncompleteShouldSkipIt() throws IOException {
+        try (TicketCommentJournal journal = new TicketCommentJournal(path, false)) {
+            journal.open();
+            journal.append(new PendingTicketComment(1, 1, "First", new Date()));
+        }
+        Files.write(path, "{\"sequence\":2,\"ticketId\":1,\"comm".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (TicketCommentJournal journal = new TicketCommentJournal(path, false)) {
+            List<PendingTicketComment> pending = journal.open();
+
+            assertEquals(1, pending.size());
+            assertEquals("First", pending.get(0).getComment());
+            journal.append(new PendingTicketComment(2, 1, "Second", new Date()));
+        }
+
+        try (TicketCommentJournal journal = new TicketCommentJournal(path, false)) {
+            List<PendingTicketComment> pending = journal.open();
+
+            assertEquals(2, pending.size());
+            assertEquals("Second", pending.get(1).getComment());
+        }
+    }
+}
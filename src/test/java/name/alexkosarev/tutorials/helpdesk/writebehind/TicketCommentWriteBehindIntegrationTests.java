@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.writebehind;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Интеграционные тесты для тестирования {@link TicketCommentWriteBehindQueue}
+ *
+ * @author Alexander Kosarev
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+    "helpdesk.comments.write-behind.enabled=true",
+    "helpdesk.comments.write-behind.journal=target/write-behind/comments.journal",
+    "helpdesk.comments.write-behind.fsync=false",
+    "helpdesk.comments.write-behind.flush-interval=50"
+})
+@AutoConfigureMockMvc
+public class TicketCommentWriteBehindIntegrationTests {
+
+    private static final Path JOURNAL = Paths.get("target/write-behind/comments.journal");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Журнал, оставшийся после аварийной остановки, с одним несохранённым комментарием.
+     */
+    @BeforeClass
+    public static void createJournal() throws IOException {
+        Files.deleteIfExists(JOURNAL);
+        Files.deleteIfExists(Paths.get(JOURNAL + ".checkpoint"));
+        try (TicketCommentJournal journal = new TicketCommentJournal(JOURNAL, false)) {
+            journal.open();
+            journal.append(new PendingTicketComment(1, 2, "Recovered write-behind comment", new Date()));
+        }
+    }
+
+    /**
+     * Создание комментария в режиме отложенной записи.
+     *
+     * Должно быть возвращено перенаправление на страницу заявки, комментарий должен быть сохранён в фоне вместе с
+     * увеличением количества комментариев заявки.
+     */
+    @Test
+    public void createShouldSaveCommentInBackground() throws Exception {
+        awaitComment("Recovered write-behind comment");
+        int commentCount = jdbcTemplate.queryForObject("select comment_count from ticket where id = 2", Integer.class);
+
+        mockMvc.perform(post("/tickets/2/comments").param("comment", "Write-behind comment"))
+                .andDo(print())
+                .andExpect(redirectedUrl("/tickets/2"));
+
+        awaitComment("Write-behind comment");
+        assertEquals(commentCount + 1, (int) jdbcTemplate.queryForObject("select comment_count from ticket where id = 2",
+                Integer.class));
+    }
+
+    /**
+     * Восстановление комментариев из журнала при запуске.
+     *
+     * Комментарий, не сохранённый до остановки, должен быть сохранён один раз.
+     */
+    @Test
+    public void startWhenJournalHasUnsavedCommentsShouldSaveThem() throws Exception {
+        awaitComment("Recovered write-behind comment");
+
+        assertEquals(1, (int) jdbcTemplate.queryForObject("select count(*) from ticket_comment where comment = ?",
+                Integer.class, "Recovered write-behind comment"));
+    }
+
+    /**
+     * Метрики очереди отложенной записи.
+     *
+     * На эндпоинте /metrics должны быть длина очереди и перцентили времени сохранения пачки.
+     */
+    @Test
+    public void metricsShouldContainQueueDepthAndFlushLatency() throws Exception {
+        awaitComment("Recovered write-behind comment");
+
+        mockMvc.perform(get("/metrics").header(HttpHeaders.AUTHORIZATION, "Bearer test-scrape-token"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['helpdesk.comments.write-behind.depth']").isNumber())
+                .andExpect(jsonPath("$['helpdesk.comments.write-behind.flush.snapshot.99thPercentile']").isNumber());
+    }
+
+    private void awaitComment(String comment) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (jdbcTemplate.queryForObject("select count(*) from ticket_comment where comment = ?", Integer.class,
+                comment) == 0) {
+            assertTrue("Comment is not saved: " + comment, System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+}
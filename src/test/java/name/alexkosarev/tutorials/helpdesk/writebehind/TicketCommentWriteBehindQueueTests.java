@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 Alexander Kosarev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.alexkosarev.tutorials.helpdesk.writebehind;
+
+import com.codahale.metrics.MetricRegistry;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import name.alexkosarev.tutorials.helpdesk.entities.TicketComment;
+import name.alexkosarev.tutorials.helpdesk.events.TicketChangeEvent;
+import name.alexkosarev.tutorials.helpdesk.services.TicketCommentService;
+import name.alexkosarev.tutorials.helpdesk.services.TicketSearchService;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import org.mockito.Mock;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+/**
+ * Модульные тесты для тестирования {@link TicketCommentWriteBehindQueue}
+ *
+ * @author Alexander Kosarev
+ */
+public class TicketCommentWriteBehindQueueTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private TicketCommentService ticketCommentService;
+
+    @Mock
+    private TicketSearchService ticketSearchService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private Path path;
+
+    private TicketCommentWriteBehindQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+
+        path = temporaryFolder.getRoot().toPath().resolve("comments.journal");
+        queue = new TicketCommentWriteBehindQueue(ticketCommentService, ticketSearchService, eventPublisher,
+                new MetricRegistry(), true, path.toString(), TicketCommentJournal.DEFAULT_COMPACTION_SIZE, false, 100, 100,
+                200, 1, 4, 30000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        queue.destroy();
+    }
+
+    /**
+     * Сохранение пачки из журнала, в которой один комментарий не может быть сохранён.
+     *
+     * Комментарии пачки должны быть сохранены по одному, а ошибочный комментарий должен быть перенесён в журнал
+     * недоставленных комментариев.
+     */
+    @Test
+    public void flushWhenCommentCannotBeSavedShouldDeadLetterIt() throws Exception {
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            List<TicketComment> comments = (List<TicketComment>) invocation.getArguments()[0];
+            if (comments.stream().anyMatch(comment -> comment.getComment().equals("Poison"))) {
+                throw new DataIntegrityViolationException("Poison comment");
+            }
+            return comments;
+        }).when(ticketCommentService)
+                .createAll(anyListOf(TicketComment.class));
+
+        try (TicketCommentJournal journal = new TicketCommentJournal(path, false)) {
+            journal.open();
+            journal.append(new PendingTicketComment(1, 1, "First", new Date()));
+            journal.append(new PendingTicketComment(2, 1, "Poison", new Date()));
+            journal.append(new PendingTicketComment(3, 1, "Third", new Date()));
+        }
+        queue.afterPropertiesSet();
+
+        verify(eventPublisher, timeout(5000).times(2)).publishEvent(any(TicketChangeEvent.class));
+        verify(ticketCommentService, times(4)).createAll(anyListOf(TicketComment.class));
+
+        Path deadLetterPath = Paths.get(path + ".dead");
+        List<String> deadLetters = Files.readAllLines(deadLetterPath, StandardCharsets.UTF_8);
+        assertEquals(1, deadLetters.size());
+        assertTrue(deadLetters.get(0).contains("\"Poison\""));
+        assertFalse(deadLetters.get(0).contains("\"First\""));
+    }
+
+    /**
+     * Сохранение пачки из журнала при временной недоступности базы данных.
+     *
+     * Пачка должна сохраняться повторно до успеха, а комментарии не должны переноситься в журнал недоставленных
+     * комментариев.
+     */
+    @Test
+    public void flushWhenDatabaseIsUnavailableShouldRetryBatch() throws Exception {
+        AtomicInteger failures = new AtomicInteger(3);
+        doAnswer(invocation -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new CannotCreateTransactionException("Database is unavailable");
+            }
+            return invocation.getArguments()[0];
+        }).when(ticketCommentService)
+                .createAll(anyListOf(TicketComment.class));
+
+        try (TicketCommentJournal journal = new TicketCommentJournal(path, false)) {
+            journal.open();
+            journal.append(new PendingTicketComment(1, 1, "First", new Date()));
+            journal.append(new PendingTicketComment(2, 1, "Second", new Date()));
+        }
+        queue.afterPropertiesSet();
+
+        verify(eventPublisher, timeout(5000).times(2)).publishEvent(any(TicketChangeEvent.class));
+        verify(ticketCommentService, times(4)).createAll(anyListOf(TicketComment.class));
+
+        assertFalse(Files.exists(Paths.get(path + ".dead")));
+    }
+}
@@ -13,6 +13,10 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-insert into ticket (issue, issue_details, date_created) values ('Ticket #1 issue', 'Ticket #1 issue description', now()), ('Ticket #2 issue', 'Ticket #2 issue description', now()), ('Ticket #3 issue', 'Ticket #3 issue description', now()), ('Ticket #4 issue', 'Ticket #4 issue description', now());
+insert into ticket (id, issue, issue_details, date_created, date_modified, comment_count, last_activity) values (1, 'Ticket #1 issue', 'Ticket #1 issue description', now(), now(), 2, now()), (2, 'Ticket #2 issue', 'Ticket #2 issue description', now(), now(), 1, now()), (3, 'Ticket #3 issue', 'Ticket #3 issue description', now(), now(), 0, now()), (4, 'Ticket #4 issue', 'Ticket #4 issue description', now(), now(), 0, now());
 
-insert into ticket_comment (comment, date_created, ticket_id) values ('Ticket #1 comment #1', now(), 1), ('Ticket #2 comment #2', now(), 2), ('Ticket #1 comment #3', now(), 1);
\ No newline at end of file
+alter sequence ticket_seq restart with 5;
+
+insert into ticket_comment (id, comment, date_created, ticket_id) values (1, 'Ticket #1 comment #1', now(), 1), (2, 'Ticket #2 comment #2', now(), 2), (3, 'Ticket #1 comment #3', now(), 1);
+
+alter sequence ticket_comment_seq restart with 4;
\ No newline at end of file